@@ -0,0 +1,45 @@
+package com.example.flow;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// 벤치마크 / 부하 테스트용 embedded redis + 애플리케이션 컨텍스트 ( 웹 서버 없이 )
+// args 는 --key=value 로 application.yml 설정을 덮어쓴다
+public class EmbeddedFlow implements AutoCloseable {
+
+    private final RedisServer redisServer;
+
+    private final ConfigurableApplicationContext context;
+
+    public EmbeddedFlow(final int port, final String... args) throws IOException {
+        this.redisServer = new RedisServer(port);
+        this.redisServer.start();
+
+        var arguments = new ArrayList<String>(List.of("--spring.data.redis.port=" + port, "--scheduler.enabled=false"));
+        arguments.addAll(List.of(args));
+        try {
+            this.context = new SpringApplicationBuilder(FlowApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(arguments.toArray(String[]::new));
+        } catch (RuntimeException ex) {
+            redisServer.stop();
+            throw ex;
+        }
+    }
+
+    public <T> T getBean(final Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        redisServer.stop();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.flow;
+
+import com.example.flow.config.MemberProperties;
+import com.example.flow.config.MemberProperties.Encoding;
+import com.example.flow.service.UserQueueService;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+
+// 대기자 한명당 redis 메모리 비교 ( member 인코딩별, embedded redis )
+// ./gradlew memoryReport --args="users=100,100000"
+// 인코딩마다 대기열에 users 명을 등록 ( wait + seen ) 하고 모두 진입 허용 ( proceed ) 한 뒤 키별 MEMORY USAGE 를 출력
+// userId 는 sequential ( 1, 2, 3 .. ) 과 snowflake ( 19자리 ) 두 종류
+// 옵션 : users, concurrency, port
+public class MemberMemoryReport {
+
+    private static final Map<String, LongUnaryOperator> USER_IDS = new LinkedHashMap<>();
+
+    static {
+        USER_IDS.put("sequential", index -> index + 1);
+        USER_IDS.put("snowflake", index -> 1_700_000_000_000_000_000L + (index << 22));
+    }
+
+    // 키 메모리 ( 전체 샘플링 ) + 내부 인코딩 ( listpack | skiplist )
+    @SuppressWarnings("unchecked")
+    private static final RedisScript<List<Object>> MEMORY_USAGE = (RedisScript<List<Object>>) (RedisScript<?>) RedisScript.of(
+            "return { redis.call('MEMORY', 'USAGE', KEYS[1], 'SAMPLES', '0') or 0, redis.call('OBJECT', 'ENCODING', KEYS[1]) }", List.class);
+
+    private final UserQueueService userQueueService;
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    public MemberMemoryReport(UserQueueService userQueueService, ReactiveRedisTemplate<String,String> reactiveRedisTemplate) {
+        this.userQueueService = userQueueService;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>(Map.of(
+                "users", "100,100000",
+                "concurrency", "256",
+                "port", "63794"));
+        for (var arg : args) {
+            var pair = arg.split("=", 2);
+            options.put(pair[0], pair[1]);
+        }
+        System.out.println("options " + options);
+
+        try (var flow = new EmbeddedFlow(Integer.parseInt(options.get("port")),
+                "--queue.rank-cache.staleness=0",
+                "--queue.admission-stream.enabled=false")) {
+            var report = new MemberMemoryReport(flow.getBean(UserQueueService.class), flow.getBean(ReactiveStringRedisTemplate.class));
+            System.out.printf("%n%-8s %-11s %8s %10s %10s %10s %14s  %s%n", "encoding", "userIds", "users", "wait(B)", "seen(B)", "proceed(B)", "B/waiter", "encoding(wait)");
+            for (var encoding : Encoding.values()) {
+                // 새로 등록되는 사용자부터 적용되므로 인코딩마다 다른 대기열에 등록
+                flow.getBean(MemberProperties.class).setEncoding(encoding);
+                for (var users : options.get("users").split(",")) {
+                    for (var userIds : USER_IDS.entrySet()) {
+                        report.run(encoding, userIds.getKey(), userIds.getValue(), Integer.parseInt(users), Integer.parseInt(options.get("concurrency")));
+                    }
+                }
+            }
+        }
+    }
+
+    public void run(final Encoding encoding, final String kind, final LongUnaryOperator userIds, final int users, final int concurrency) {
+        var queue = "memory-%s-%s-%d".formatted(encoding.name().toLowerCase(), kind, users);
+        Flux.range(0, users)
+                .flatMap(index -> userQueueService.registerWaitQueue(queue, userIds.applyAsLong(index)), concurrency)
+                .blockLast();
+        var wait = memoryUsage("users:queue:%s:wait".formatted(queue));
+        var seen = memoryUsage("users:queue:%s:seen".formatted(queue));
+
+        userQueueService.allowUser(queue, (long) users).block();
+        var proceed = memoryUsage("users:queue:%s:proceed".formatted(queue));
+
+        System.out.printf("%-8s %-11s %8d %10d %10d %10d %14.1f  %s%n",
+                encoding.name().toLowerCase(), kind, users,
+                (Long) wait.get(0), (Long) seen.get(0), (Long) proceed.get(0),
+                ((Long) wait.get(0) + (Long) seen.get(0)) / (double) users,
+                wait.get(1));
+    }
+
+    private List<Object> memoryUsage(final String key) {
+        return reactiveRedisTemplate.execute(MEMORY_USAGE, List.of(key)).blockLast();
+    }
+}
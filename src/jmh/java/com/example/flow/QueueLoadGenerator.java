@@ -0,0 +1,203 @@
+package com.example.flow;
+
+import com.example.flow.service.UserQueueService;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// 대기열 부하 테스트 ( embedded redis, 웹 서버 없이 서비스 직접 호출 )
+// ./gradlew loadTest --args="users=100000 concurrency=512 rounds=20"
+// 1. register : 가상 사용자 users 명 등록
+// 2. admit    : rounds 번에 나눠 진입 허용 ( 한번에 users / rounds 명 )
+// 3. rank     : 진입 허용마다 아직 대기 중인 사용자 전원이 순번 조회
+// 4. register-legacy / admit-legacy : 스크립트 도입 이전 명령 순서로 1, 2 를 다른 대기열 ( {queue}-legacy ) 에 같은 조건으로 실행
+//    ( 등록 : ZADD + ZRANK, 진입 허용 : ZPOPMIN + 허용 인원만큼 ZADD )
+// 동작별 처리량, p50/p99/p999 지연, 요청 한번당 왕복 수 ( 클라이언트가 보낸 명령, 스크립트는 EVALSHA 하나 ),
+// 요청 한번당 redis 명령 수 ( INFO commandstats, 스크립트 안에서 실행된 명령 포함 ) 를 출력
+// 측정 전에 같은 단계를 users / 10 명으로 한번 실행하고 ( JIT 예열 ) redis 를 비운다
+// 옵션 : users, concurrency, rounds, queue, shards, staleness, batch, rank ( exact | approximate ), legacy ( true | false ), port
+public class QueueLoadGenerator {
+
+    private final UserQueueService userQueueService;
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final Map<String, Action> actions = new LinkedHashMap<>();
+
+    // 클라이언트가 보낸 명령 수
+    private final LongAdder sent = new LongAdder();
+
+    public QueueLoadGenerator(UserQueueService userQueueService, ReactiveRedisTemplate<String,String> reactiveRedisTemplate, LettuceConnectionFactory connectionFactory) {
+        this.userQueueService = userQueueService;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        // 리스너는 새로 여는 커넥션부터 붙어서 시작할 때 열린 공유 커넥션은 다시 연다
+        connectionFactory.getRequiredNativeClient().addListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                sent.increment();
+            }
+        });
+        connectionFactory.resetConnection();
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>(Map.of(
+                "users", "10000",
+                "concurrency", "256",
+                "rounds", "10",
+                "queue", "load",
+                "shards", "1",
+                "staleness", "5s",
+                "batch", "true",
+                "rank", "exact",
+                "legacy", "true",
+                "port", "63793"));
+        for (var arg : args) {
+            var pair = arg.split("=", 2);
+            options.put(pair[0], pair[1]);
+        }
+        System.out.println("options " + options);
+
+        var queue = options.get("queue");
+        try (var flow = new EmbeddedFlow(Integer.parseInt(options.get("port")),
+                "--queue.rank-cache.staleness=" + options.get("staleness"),
+                "--queue.batch.enabled=" + options.get("batch"),
+                "--queue.rank.mode=" + options.get("rank"),
+                "--queue.sharding.queues." + queue + "=" + options.get("shards"))) {
+            var generator = new QueueLoadGenerator(flow.getBean(UserQueueService.class), flow.getBean(ReactiveStringRedisTemplate.class), flow.getBean(LettuceConnectionFactory.class));
+            var users = Integer.parseInt(options.get("users"));
+            var legacy = Boolean.parseBoolean(options.get("legacy"));
+            for (var warmup : List.of(true, false)) {
+                var count = warmup ? Math.max(users / 10, 1) : users;
+                generator.run(queue, count, Integer.parseInt(options.get("concurrency")), Integer.parseInt(options.get("rounds")));
+                if (legacy) {
+                    generator.runLegacy(queue + "-legacy", count, Integer.parseInt(options.get("concurrency")), Integer.parseInt(options.get("rounds")));
+                }
+                if (warmup) {
+                    generator.reset();
+                }
+            }
+            generator.report();
+        }
+    }
+
+    public void run(final String queue, final int users, final int concurrency, final int rounds) {
+        var register = action("register");
+        measure(register, () -> Flux.range(1, users)
+                .flatMap(userId -> timed(register, userQueueService.registerWaitQueue(queue, userId.longValue())), concurrency)
+                .then());
+
+        var admit = action("admit");
+        var rank = action("rank");
+        var admitted = new boolean[users + 1];
+        var perRound = (long) Math.ceil((double) users / rounds);
+        for (int round = 0; round < rounds; round++) {
+            measure(admit, () -> timed(admit, userQueueService.allowUser(queue, perRound)).then());
+            measure(rank, () -> Flux.range(1, users)
+                    .filter(userId -> !admitted[userId])
+                    .flatMap(userId -> timed(rank, userQueueService.getRank(queue, userId.longValue()))
+                            .doOnNext(position -> admitted[userId] = position < 0), concurrency)
+                    .then());
+        }
+    }
+
+    // 스크립트 도입 이전 명령 순서 ( UserQueueService 를 거치지 않고 명령을 직접 보낸다 )
+    public void runLegacy(final String queue, final int users, final int concurrency, final int rounds) {
+        var waitKey = "users:queue:%s:wait".formatted(queue);
+        var proceedKey = "users:queue:%s:proceed".formatted(queue);
+
+        var register = action("register-legacy");
+        measure(register, () -> Flux.range(1, users)
+                .flatMap(userId -> timed(register, reactiveRedisTemplate.opsForZSet().add(waitKey, userId.toString(), Instant.now().getEpochSecond())
+                        .filter(added -> added)
+                        .flatMap(added -> reactiveRedisTemplate.opsForZSet().rank(waitKey, userId.toString()))), concurrency)
+                .then());
+
+        var admit = action("admit-legacy");
+        var perRound = (long) Math.ceil((double) users / rounds);
+        for (int round = 0; round < rounds; round++) {
+            measure(admit, () -> timed(admit, reactiveRedisTemplate.opsForZSet().popMin(waitKey, perRound)
+                    .flatMap(member -> reactiveRedisTemplate.opsForZSet().add(proceedKey, member.getValue(), Instant.now().getEpochSecond()))
+                    .count()).then());
+        }
+    }
+
+    // 기록과 redis 를 비운다
+    public void reset() {
+        actions.clear();
+        reactiveRedisTemplate.execute(connection -> connection.serverCommands().flushAll()).blockLast();
+    }
+
+    public void report() {
+        System.out.printf("%n%-16s %10s %12s %10s %10s %10s %15s %14s  %s%n", "action", "count", "ops/s", "p50(us)", "p99(us)", "p999(us)", "round trips/op", "redis cmd/op", "top commands");
+        actions.forEach((name, action) -> {
+            var histogram = action.latency;
+            var count = histogram.getTotalCount();
+            var top = action.commands.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(4)
+                    .map(entry -> "%s=%.2f".formatted(entry.getKey(), (double) entry.getValue() / count))
+                    .toList();
+            System.out.printf("%-16s %10d %12.0f %10.0f %10.0f %10.0f %15.2f %14.2f  %s%n",
+                    name,
+                    count,
+                    count / (action.elapsedNanos / 1e9),
+                    histogram.getValueAtPercentile(50) / 1e3,
+                    histogram.getValueAtPercentile(99) / 1e3,
+                    histogram.getValueAtPercentile(99.9) / 1e3,
+                    (double) action.sent / count,
+                    (double) action.commands.values().stream().mapToLong(Long::longValue).sum() / count,
+                    top);
+        });
+    }
+
+    private Action action(final String name) {
+        return actions.computeIfAbsent(name, key -> new Action());
+    }
+
+    // 단계 하나를 실행하면서 걸린 시간과 그동안 보낸 / 실행된 redis 명령 수를 기록
+    private void measure(final Action action, final Supplier<Mono<Void>> phase) {
+        reactiveRedisTemplate.execute(connection -> connection.serverCommands().resetConfigStats()).blockLast();
+        var sentBefore = sent.sum();
+        var startedAt = System.nanoTime();
+        phase.get().block();
+        action.elapsedNanos += System.nanoTime() - startedAt;
+        action.sent += sent.sum() - sentBefore;
+
+        var stats = reactiveRedisTemplate.execute(connection -> connection.serverCommands().info("commandstats")).blockLast();
+        stats.forEach((key, value) -> {
+            var command = key.toString().substring("cmdstat_".length());
+            if (command.equals("config") || command.equals("info")) {
+                return ;
+            }
+            var calls = Long.parseLong(value.toString().split(",")[0].substring("calls=".length()));
+            action.commands.merge(command, calls, Long::sum);
+        });
+    }
+
+    private <T> Mono<T> timed(final Action action, final Mono<T> mono) {
+        return Mono.defer(() -> {
+            var startedAt = System.nanoTime();
+            return mono.doOnTerminate(() -> action.latency.recordValue(System.nanoTime() - startedAt));
+        });
+    }
+
+    private static class Action {
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(60), 3);
+        private final Map<String, Long> commands = new TreeMap<>();
+        private long elapsedNanos;
+        private long sent;
+    }
+}
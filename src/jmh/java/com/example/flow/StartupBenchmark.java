@@ -0,0 +1,143 @@
+package com.example.flow;
+
+import redis.embedded.RedisServer;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 노드 시작 시간 측정 ( 새 JVM 프로세스 시작부터 )
+// ./gradlew startupBenchmark --args="runs=5"
+// embedded redis 하나를 띄우고 FlowApplication 을 runs 번 새 JVM 으로 실행
+// - ready : /actuator/health/readiness 가 UP 이 될 때까지 ( 시작 예열 포함 )
+// - first : readiness 뒤 첫 GET /api/v1/queue/rank 응답까지 ( 프로세스 시작 기준 )
+// - first(ms) : 그 첫 요청 하나의 지연
+// 옵션 : runs, jvmArgs / args ( 공백으로 구분, JVM 옵션 / 애플리케이션 옵션 ), classpath, port, redisPort, log ( 애플리케이션 로그 파일 )
+// jvmArgs, classpath 기본값은 gradle 이 넘겨준 값 ( -Paot, CDS archive ), 없으면 현재 classpath
+public class StartupBenchmark {
+
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private final Map<String, String> options;
+
+    public StartupBenchmark(final Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>(Map.of(
+                "runs", "5",
+                "jvmArgs", System.getProperty("flow.jvmArgs", ""),
+                "args", "",
+                "classpath", System.getProperty("flow.classpath", System.getProperty("java.class.path")),
+                "port", "9011",
+                "redisPort", "63795",
+                "log", ""));
+        for (var arg : args) {
+            var pair = arg.split("=", 2);
+            options.put(pair[0], pair[1]);
+        }
+        System.out.println("options " + options.entrySet().stream().filter(entry -> !entry.getKey().equals("classpath")).toList());
+
+        var redisServer = new RedisServer(Integer.parseInt(options.get("redisPort")));
+        redisServer.start();
+        try {
+            var benchmark = new StartupBenchmark(options);
+            var results = new ArrayList<long[]>();
+            System.out.printf("%n%-5s %10s %10s %10s%n", "run", "ready(ms)", "first(ms)", "req(ms)");
+            for (int run = 1; run <= Integer.parseInt(options.get("runs")); run++) {
+                var result = benchmark.run();
+                results.add(result);
+                System.out.printf("%-5d %10d %10d %10d%n", run, result[0], result[1], result[2]);
+            }
+            for (var summary : List.of("min", "median")) {
+                var values = new long[3];
+                for (int i = 0; i < values.length; i++) {
+                    var column = i;
+                    var sorted = results.stream().mapToLong(result -> result[column]).sorted().toArray();
+                    values[i] = summary.equals("min") ? sorted[0] : sorted[sorted.length / 2];
+                }
+                System.out.printf("%-5s %10d %10d %10d%n", summary, values[0], values[1], values[2]);
+            }
+        } finally {
+            redisServer.stop();
+        }
+    }
+
+    // { readiness UP 까지, 첫 응답까지, 첫 요청 지연 } ( millis )
+    public long[] run() throws Exception {
+        var port = options.get("port");
+        var command = new ArrayList<String>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(split(options.get("jvmArgs")));
+        command.addAll(List.of("-cp", options.get("classpath"), FlowApplication.class.getName(),
+                "--server.port=" + port,
+                "--spring.data.redis.port=" + options.get("redisPort"),
+                "--scheduler.enabled=false"));
+        command.addAll(split(options.get("args")));
+
+        var builder = new ProcessBuilder(command);
+        if (options.get("log").isEmpty()) {
+            builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        } else {
+            builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(new File(options.get("log"))));
+        }
+
+        var startedAt = System.nanoTime();
+        var process = builder.start();
+        try {
+            while (!isReady(port)) {
+                if (!process.isAlive() || System.nanoTime() - startedAt > START_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("application did not become ready ( exit %s )".formatted(process.isAlive() ? "-" : process.exitValue()));
+                }
+                Thread.sleep(10);
+            }
+            var readyAt = System.nanoTime();
+
+            var response = get("http://localhost:%s/api/v1/queue/rank?queue=startup&user_id=1".formatted(port));
+            var firstAt = System.nanoTime();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("first request failed : " + response.statusCode() + " " + response.body());
+            }
+            return new long[] {
+                    TimeUnit.NANOSECONDS.toMillis(readyAt - startedAt),
+                    TimeUnit.NANOSECONDS.toMillis(firstAt - startedAt),
+                    TimeUnit.NANOSECONDS.toMillis(firstAt - readyAt) };
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private boolean isReady(final String port) {
+        try {
+            var response = get("http://localhost:%s/actuator/health/readiness".formatted(port));
+            return response.statusCode() == 200 && response.body().contains("UP");
+        } catch (Exception ex) {
+            // 아직 포트가 열리지 않음
+            return false;
+        }
+    }
+
+    private HttpResponse<String> get(final String uri) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(5)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<String> split(final String value) {
+        return value.isBlank() ? List.of() : Arrays.asList(value.trim().split("\\s+"));
+    }
+}
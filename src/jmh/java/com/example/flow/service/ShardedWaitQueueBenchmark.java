@@ -0,0 +1,58 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbeddedFlow;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 키 하나 대기열 vs 샤드 대기열 처리량 비교 ( embedded redis )
+// - register : 등록 ( 샤드는 샤드 순번 조회 스크립트 + 공용 순번 INCR + 샤드 등록 스크립트 + 다른 샤드 ZCOUNT )
+// - rank     : 순번 조회 ( near-cache 끔 )
+// redis 한대에서는 샤드가 왕복만 늘어나므로, 샤드의 이점은 슬롯이 여러 노드로 나뉘는 클러스터에서 나온다
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ShardedWaitQueueBenchmark {
+
+    private static final int PORT = 63791;
+
+    @Param({"single", "sharded"})
+    private String queue;
+
+    // 미리 등록해 둘 대기 인원
+    @Param({"20000"})
+    private int waiting;
+
+    private EmbeddedFlow flow;
+
+    private UserQueueService userQueueService;
+
+    private final AtomicLong userIds = new AtomicLong(1_000_000L);
+
+    @Setup
+    public void setup() throws IOException {
+        flow = new EmbeddedFlow(PORT, "--queue.rank-cache.staleness=0", "--queue.sharding.queues.sharded=8");
+        userQueueService = flow.getBean(UserQueueService.class);
+        userQueueService.registerWaitQueueBulk(queue, Flux.range(1, waiting).map(Long::valueOf)).blockLast();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        flow.close();
+    }
+
+    @Benchmark
+    public Long register() {
+        return userQueueService.registerWaitQueue(queue, userIds.incrementAndGet()).block();
+    }
+
+    @Benchmark
+    public Long rank() {
+        return userQueueService.getRank(queue, ThreadLocalRandom.current().nextLong(1, waiting + 1)).block();
+    }
+}
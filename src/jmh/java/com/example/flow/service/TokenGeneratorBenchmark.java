@@ -0,0 +1,83 @@
+package com.example.flow.service;
+
+import com.example.flow.config.TokenProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 토큰 확인 비교
+// - legacySha256 : 기존 방식 ( 요청마다 MessageDigest 생성 + String.format )
+// - hmac         : 입장 토큰 검증 ( 스레드별 Mac 재사용 + 테이블 hex 변환 )
+// - hmacCached   : hmac + (queue,userId) 검증 캐시
+// - mint         : 입장 토큰 발급
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenGeneratorBenchmark {
+
+    // 캐시 적중을 보려면 사용자 수가 캐시 크기보다 작아야 함
+    @Param({"10000"})
+    private int users;
+
+    private TokenGenerator hmac;
+
+    private TokenGenerator hmacCached;
+
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        var noCache = new TokenProperties();
+        noCache.setSecret("benchmark-secret");
+        noCache.setCacheSize(0);
+        hmac = new TokenGenerator(noCache);
+
+        var cached = new TokenProperties();
+        cached.setSecret("benchmark-secret");
+        cached.setCacheSize(users);
+        hmacCached = new TokenGenerator(cached);
+
+        tokens = new String[users];
+        for (int userId = 0; userId < users; userId++) {
+            tokens[userId] = hmac.mint("default", userId, 1_700_000_000L);
+        }
+    }
+
+    @Benchmark
+    public String legacySha256() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        var input = "user-queue-%s-%d".formatted("default", nextUser());
+        byte[] encodedHash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hexString = new StringBuilder();
+        for (byte aByte : encodedHash) {
+            hexString.append(String.format("%02x",aByte));
+        }
+        return hexString.toString();
+    }
+
+    @Benchmark
+    public TokenGenerator.AdmissionToken hmac() {
+        var userId = nextUser();
+        return hmac.verify("default", userId, tokens[userId]);
+    }
+
+    @Benchmark
+    public TokenGenerator.AdmissionToken hmacCached() {
+        var userId = nextUser();
+        return hmacCached.verify("default", userId, tokens[userId]);
+    }
+
+    @Benchmark
+    public String mint() {
+        return hmac.mint("default", nextUser(), 1_700_000_000L);
+    }
+
+    private int nextUser() {
+        return ThreadLocalRandom.current().nextInt(users);
+    }
+}
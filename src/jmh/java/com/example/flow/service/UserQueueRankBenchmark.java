@@ -0,0 +1,51 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbeddedFlow;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 순번 조회 경로 ( embedded redis )
+// - getRank : near-cache 끔(0s) / 켬(5s), 저장소 redis / memory
+// 캐시를 켜면 staleness 동안 같은 사용자의 조회는 redis 를 거치지 않는다
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class UserQueueRankBenchmark {
+
+    private static final int PORT = 63792;
+
+    @Param({"0s", "5s"})
+    private String staleness;
+
+    @Param({"redis", "memory"})
+    private String store;
+
+    @Param({"100000"})
+    private int waiting;
+
+    private EmbeddedFlow flow;
+
+    private UserQueueService userQueueService;
+
+    @Setup
+    public void setup() throws IOException {
+        flow = new EmbeddedFlow(PORT, "--queue.rank-cache.staleness=" + staleness, "--queue.store=" + store);
+        userQueueService = flow.getBean(UserQueueService.class);
+        userQueueService.registerWaitQueueBulk("default", Flux.range(1, waiting).map(Long::valueOf)).blockLast();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        flow.close();
+    }
+
+    @Benchmark
+    public Long getRank() {
+        return userQueueService.getRank("default", ThreadLocalRandom.current().nextLong(1, waiting + 1)).block();
+    }
+}
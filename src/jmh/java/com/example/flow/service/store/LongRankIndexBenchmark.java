@@ -0,0 +1,46 @@
+package com.example.flow.service.store;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 메모리 대기열 순번 인덱스 ( 단일 스레드, lock / Mono 없이 자료구조만 )
+// - rank  : 대기 인원 waiting 명 중 임의의 사용자 순번
+// - cycle : 맨 앞 한명 진입 허용 + 맨 뒤 한명 등록 ( 대기 인원 유지, 압축 포함 )
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LongRankIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int waiting;
+
+    private LongRankIndex index;
+
+    private long first;
+
+    private long next;
+
+    @Setup
+    public void setup() {
+        index = new LongRankIndex(waiting);
+        for (long userId = 1; userId <= waiting; userId++) {
+            index.add(userId, 0L);
+        }
+        first = 1;
+        next = waiting + 1L;
+    }
+
+    @Benchmark
+    public long rank() {
+        return index.rank(ThreadLocalRandom.current().nextLong(first, next));
+    }
+
+    @Benchmark
+    public int cycle() {
+        var polled = index.pollFirst(1, userId -> first = userId + 1);
+        index.add(next++, 0L);
+        return polled;
+    }
+}
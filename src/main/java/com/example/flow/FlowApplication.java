@@ -1,15 +1,20 @@
 package com.example.flow;
 
+import com.example.flow.config.FlowRuntimeHints;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @EnableScheduling
+@ImportRuntimeHints(FlowRuntimeHints.class)
 public class FlowApplication {
 
     public static void main(String[] args) {
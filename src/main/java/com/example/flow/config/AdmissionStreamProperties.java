@@ -0,0 +1,28 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.admission-stream")
+public class AdmissionStreamProperties {
+
+    // 진입 허용 이벤트를 stream 에 남길지 여부 ( 읽는 서비스가 있을 때만 켠다 )
+    private boolean enabled = false;
+
+    // 대기열별 stream 에 남길 최대 이벤트 수 ( 대략, MAXLEN ~ )
+    private long maxLength = 100_000L;
+
+    // 마지막 진입 허용 뒤 stream 을 남겨두는 시간 ( 비워진 대기열의 stream 은 이 시간이 지나면 지워진다 )
+    private Duration ttl = Duration.ofDays(1);
+
+    // 한번에 읽어올 최대 이벤트 수
+    private int readBatchSize = 100;
+
+    // 새 이벤트가 없을 때 기다리는 시간 ( XREADGROUP BLOCK )
+    private Duration pollTimeout = Duration.ofSeconds(2);
+}
@@ -0,0 +1,17 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.bulk")
+public class BulkProperties {
+
+    // 스크립트 한번에 처리할 userId 수
+    private int chunkSize = 1000;
+
+    // 동시에 보낼 chunk 수 ( 한 커넥션에 파이프라이닝 됨 )
+    private int concurrency = 8;
+}
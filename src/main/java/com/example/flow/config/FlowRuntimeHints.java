@@ -0,0 +1,16 @@
+package com.example.flow.config;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// AOT / native image 에서 classpath 로 읽는 파일 ( 빈 정의 / 설정 / 컨트롤러 응답 타입은 Spring AOT 가 직접 등록 )
+public class FlowRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(final RuntimeHints hints, final ClassLoader classLoader) {
+        // redis 스크립트 ( UserQueueScripts )
+        hints.resources().registerPattern("scripts/*.lua");
+        // 대기실 페이지 ( WaitingRoomController 가 시작시 읽어둔다 )
+        hints.resources().registerPattern("static/waiting-room.html");
+    }
+}
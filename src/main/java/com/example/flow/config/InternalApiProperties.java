@@ -0,0 +1,20 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.internal")
+public class InternalApiProperties {
+
+    // 내부 API 공유 키 ( X-Queue-Internal-Secret 헤더, 비어있으면 내부 API 는 모두 거절 )
+    private String secret;
+
+    // 내부 API ( "METHOD path" ), 보호 중인 서비스 / 운영자만 호출
+    private List<String> endpoints = new ArrayList<>(List.of("DELETE /api/v1/queue/allowed", "POST /api/v1/queue/feedback"));
+}
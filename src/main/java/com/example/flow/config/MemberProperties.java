@@ -0,0 +1,27 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.member")
+public class MemberProperties {
+
+    // 대기 / 허용열에 저장할 userId 인코딩 ( 새로 등록 / 허용되는 사용자부터 적용 )
+    private Encoding encoding = Encoding.DECIMAL;
+
+    // 인코딩을 바꾸는 중이면 true ( 조회 / 등록 / 삭제시 이전 인코딩 member 도 확인 )
+    // 이전 인코딩 member 가 모두 빠지면 ( 허용 + session-window 가 지나면 ) false 로 되돌린다
+    private boolean migrating = false;
+
+    public enum Encoding {
+        // userId 10진수 문자열 ( 기존 )
+        DECIMAL,
+        // '~' + userId 62진수 ( 0-9A-Za-z )
+        // 19자리 userId 가 많은 대기열 ( skiplist ) 에서 member 가 줄어든다
+        // listpack 인 작은 대기열은 10진수 member 를 정수로 저장하므로 decimal 이 더 작다
+        BASE62
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.rank-cache")
+public class RankCacheProperties {
+
+    // 캐시된 순번을 redis 조회 없이 사용할 최대 시간 ( 0 이면 캐시하지 않음 )
+    private Duration staleness = Duration.ofSeconds(5);
+
+    // 캐시할 최대 (queue,userId) 수
+    private long maxSize = 1_000_000L;
+}
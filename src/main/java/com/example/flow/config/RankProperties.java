@@ -0,0 +1,26 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.rank")
+public class RankProperties {
+
+    // 순번 계산 방식 ( 등록 / 순번 조회 )
+    private Mode mode = Mode.EXACT;
+
+    public boolean isApproximate() {
+        return mode == Mode.APPROXIMATE;
+    }
+
+    public enum Mode {
+        // 대기열에서 실제 위치 ( ZRANK, 샤드 대기열은 다른 샤드마다 ZCOUNT )
+        EXACT,
+        // 내 등록 순번 - 마지막으로 허용된 등록 순번 - 1 ( ZSCORE + GET, 샤드 수와 상관없이 명령 두번 )
+        // 앞에서 떠난 / 정리된 대기자도 세므로 실제보다 크게 나올 수 있다
+        APPROXIMATE
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.rate-limit")
+public class RateLimitProperties {
+
+    // 요청 제한 사용 여부
+    private boolean enabled = true;
+
+    // local : 노드마다 따로 제한 ( redis 조회 없음 ), redis : 모든 노드 합쳐서 제한
+    private Mode mode = Mode.LOCAL;
+
+    // local 모드에서 기억할 최대 (endpoint,client) 수
+    private long maxClients = 100_000L;
+
+    // local 모드에서 이 시간동안 요청이 없는 client 는 잊는다 ( 버킷이 다시 가득 찬 상태 )
+    private Duration idleTimeout = Duration.ofMinutes(1);
+
+    // 경로별 제한 ( endpoints."[/api/v1/queue/rank]".user / ip ), 없는 경로는 제한하지 않음
+    private Map<String, Endpoint> endpoints = new HashMap<>();
+
+    public enum Mode {
+        LOCAL, REDIS
+    }
+
+    @Getter
+    @Setter
+    public static class Endpoint {
+        // user_id 별 제한 ( 없으면 제한하지 않음 )
+        private Limit user;
+
+        // 접속 IP 별 제한 ( 없으면 제한하지 않음 )
+        private Limit ip;
+    }
+
+    @Getter
+    @Setter
+    public static class Limit {
+        // 초당 요청 수
+        private double rate = 5d;
+
+        // 한번에 몰아서 보낼 수 있는 요청 수
+        private long burst = 10L;
+
+        // 요청 하나가 쓰는 시간 ( nanos )
+        public long intervalNanos() {
+            return (long) (1_000_000_000d / rate);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.flow.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    // pub/sub 구독은 노드당 커넥션 하나만 사용한다 ( 클라이언트마다 커넥션을 열지 않도록 )
+    // 생성 시점에 redis 에 접속하므로 첫 구독때 만들어지도록 lazy
+    @Lazy
+    @Bean
+    public ReactiveRedisMessageListenerContainer reactiveRedisMessageListenerContainer(ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(connectionFactory);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "scheduler")
+public class SchedulerProperties {
+
+    // 스케쥴링 사용 여부
+    private boolean enabled = false;
+
+    // 진입 허용 주기 ( millis )
+    private long tick = 500L;
+
+    // 한번의 스케쥴링에서 대기열당 허용할 최대 인원 ( 정책이 계산한 값의 상한 )
+    private long maxAllowUserCount = 100L;
+
+    // 기본 진입 허용 정책
+    private Policy policy = new Policy();
+
+    // 동시에 진입 허용을 처리할 대기열 수
+    private int concurrency = 16;
+
+    // 스케쥴러 리스 설정
+    private Lease lease = new Lease();
+
+    // 떠난 대기자 / 만료된 허용자 정리 설정
+    private Sweep sweep = new Sweep();
+
+    // 대기열별 설정 ( queues.<queue>.max-allow-user-count, queues.<queue>.policy )
+    private Map<String, QueueProperties> queues = new HashMap<>();
+
+    public long maxAllowUserCount(String queue) {
+        var queueProperties = queues.get(queue);
+        return (queueProperties == null || queueProperties.getMaxAllowUserCount() == null)
+                ? maxAllowUserCount
+                : queueProperties.getMaxAllowUserCount();
+    }
+
+    public Policy policy(String queue) {
+        var queueProperties = queues.get(queue);
+        return (queueProperties == null || queueProperties.getPolicy() == null)
+                ? policy
+                : queueProperties.getPolicy();
+    }
+
+    @Getter
+    @Setter
+    public static class Lease {
+        // 대기열을 나눠 가질 샤드 수 ( 샤드 단위로 한 노드만 진입 허용을 처리 )
+        private int shards = 16;
+
+        // 리스 유지 시간 ( 스케쥴링 주기보다 길어야 함 )
+        private Duration ttl = Duration.ofSeconds(30);
+
+        // 노드 식별자 ( 비어있으면 실행시 랜덤 생성 )
+        private String nodeId;
+    }
+
+    @Getter
+    @Setter
+    public static class Sweep {
+        // 정리 주기 ( millis )
+        private long interval = 5000L;
+
+        // 이 시간동안 순번 조회가 없으면 떠난 대기자로 보고 제거
+        private Duration waiterTimeout = Duration.ofSeconds(60);
+
+        // 허용된 사용자가 허용열에 남아있는 시간
+        private Duration sessionWindow = Duration.ofMinutes(10);
+
+        // 대기열당 한번에 제거할 최대 인원
+        private long batchSize = 500L;
+    }
+
+    @Getter
+    @Setter
+    public static class Policy {
+        // token-bucket | target-active | aimd
+        private PolicyType type = PolicyType.TOKEN_BUCKET;
+
+        // 초당 허용 인원 ( token-bucket, aimd 의 시작값 )
+        private double rate = 10.0;
+
+        // 한번에 몰아서 허용할 수 있는 인원 ( token-bucket, aimd )
+        private long burst = 100L;
+
+        // 유지할 허용열 인원 ( target-active )
+        private long targetActive = 1000L;
+
+        // 초당 허용 인원 범위 ( aimd )
+        private double minRate = 1.0;
+        private double maxRate = 1000.0;
+
+        // 문제가 없을 때 tick 마다 늘릴 초당 허용 인원 ( aimd )
+        private double increase = 1.0;
+
+        // 지연 / 에러가 발생했을 때 곱할 비율 ( aimd )
+        private double decrease = 0.5;
+
+        // 이 지연시간을 넘으면 과부하로 본다 ( aimd )
+        private Duration targetLatency = Duration.ofMillis(500);
+    }
+
+    public enum PolicyType {
+        TOKEN_BUCKET, TARGET_ACTIVE, AIMD
+    }
+
+    @Getter
+    @Setter
+    public static class QueueProperties {
+        private Long maxAllowUserCount;
+        private Policy policy;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.sharding")
+public class ShardingProperties {
+
+    // 대기열별 샤드 수 ( 없거나 1 이면 키 하나를 사용 )
+    // 대기 인원이 있는 동안 바꾸면 기존 사용자를 찾지 못하므로 대기열이 비었을 때만 변경
+    private Map<String, Integer> queues = new HashMap<>();
+
+    public int shardsOf(String queue) {
+        var shards = queues.get(queue);
+        return shards == null ? 1 : Math.max(shards, 1);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.single-flight")
+public class SingleFlightProperties {
+
+    // 같은 조회를 하나로 합칠지 여부
+    private boolean enabled = true;
+
+    // 완료된 결과를 다시 쓰는 시간 ( 0 이면 진행 중인 조회만 합친다 )
+    private Duration ttl = Duration.ofMillis(100);
+}
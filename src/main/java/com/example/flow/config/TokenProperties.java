@@ -0,0 +1,22 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.token")
+public class TokenProperties {
+
+    // HMAC 서명 키 ( 비어있으면 실행시 랜덤 생성 - 노드 여러대면 반드시 같은 값으로 설정 )
+    private String secret;
+
+    // 입장 토큰 유효 시간
+    private Duration ttl = Duration.ofSeconds(300);
+
+    // (queue,userId) 토큰 캐시 크기 ( 0 이면 캐시하지 않음 )
+    private long cacheSize = 100_000L;
+}
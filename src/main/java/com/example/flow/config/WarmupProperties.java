@@ -0,0 +1,26 @@
+package com.example.flow.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "queue.warmup")
+public class WarmupProperties {
+
+    // 시작시 readiness 를 넘기기 전에 redis 연결 / 스크립트 로드 / 조회 경로 예열을 기다릴지 여부
+    // false 면 스크립트만 뒤에서 올린다
+    private boolean enabled = true;
+
+    // 예열을 기다리는 최대 시간 ( 넘으면 예열이 덜 끝나도 트래픽을 받는다 )
+    private Duration timeout = Duration.ofSeconds(10);
+
+    // JIT 가 컴파일하도록 순번 / 허용 여부 조회를 반복할 횟수 ( 대기열에 없는 사용자라 redis 에 쓰지 않음 )
+    private int iterations = 2000;
+
+    // 예열이 끝나면 종료 ( CDS archive 를 만드는 학습 실행용, ./gradlew cdsArchive )
+    private boolean exit = false;
+}
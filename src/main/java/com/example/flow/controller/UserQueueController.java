@@ -2,16 +2,21 @@ package com.example.flow.controller;
 
 import com.example.flow.dto.AllowUserResponse;
 import com.example.flow.dto.AllowedUserResponse;
+import com.example.flow.dto.BulkRankNumberResponse;
+import com.example.flow.dto.BulkRegisterUserResponse;
 import com.example.flow.dto.RankNumberResponse;
 import com.example.flow.dto.RegisterUserResponse;
+import com.example.flow.service.TokenGenerator;
 import com.example.flow.service.UserQueueService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 
 @RestController
@@ -20,8 +25,12 @@ import java.time.Duration;
 public class UserQueueController {
 
 
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(15);
+
     private final UserQueueService userQueueService;
 
+    private final TokenGenerator tokenGenerator;
+
     // 등록할수 있는 API path
     @PostMapping("")
     public Mono<RegisterUserResponse> registerUser(
@@ -31,6 +40,15 @@ public class UserQueueController {
                 .map(RegisterUserResponse::new);
     }
 
+    // 대량 등록 ( NDJSON : 한 줄에 user_id 하나, 순서대로 순번을 NDJSON 으로 응답 )
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkRegisterUserResponse> registerUsers(
+            @RequestParam(name = "queue", defaultValue = "default") String queue,
+            @RequestBody Flux<Long> userIds) {
+        return userQueueService.registerWaitQueueBulk(queue, userIds)
+                .map(registered -> new BulkRegisterUserResponse(registered.getT1(), registered.getT2(), registered.getT3()));
+    }
+
     // 진입 허용
     @PostMapping("/allow")
     public Mono<AllowUserResponse> allowUser(
@@ -40,24 +58,67 @@ public class UserQueueController {
                 .map(allowed -> new AllowUserResponse(count, allowed));
     }
 
+    // 보호 중인 서비스의 응답 지연 / 에러 신호 ( aimd 정책, 내부 API, X-Queue-Internal-Secret 헤더가 있어야 한다 : InternalApiFilter )
+    @PostMapping("/feedback")
+    public Mono<Void> feedback(
+            @RequestParam(name = "queue", defaultValue = "default") String queue,
+            @RequestParam(name = "latency_ms") Long latencyMillis,
+            @RequestParam(name = "error", defaultValue = "false") Boolean error) {
+        return userQueueService.reportFeedback(queue, latencyMillis, error).then();
+    }
+
     // 진입가능한지 확인
     @GetMapping("/allowed")
     public Mono<AllowedUserResponse> isAllowedUser(
             @RequestParam(name = "queue", defaultValue = "default") String queue,
             @RequestParam(name = "user_id") Long userId,
             @RequestParam(name = "token") String token
-            ) throws NoSuchAlgorithmException {
+            ) {
         return userQueueService.isAllowedByToken(queue, userId,token)
                 .map(allowed -> new AllowedUserResponse(allowed));
     }
 
+    // 입장 토큰 회수 ( 내부 API, X-Queue-Internal-Secret 헤더가 있어야 한다 : InternalApiFilter )
+    @DeleteMapping("/allowed")
+    public Mono<AllowedUserResponse> revokeAllowedUser(
+            @RequestParam(name = "queue", defaultValue = "default") String queue,
+            @RequestParam(name = "user_id") Long userId) {
+        return userQueueService.revokeToken(queue, userId)
+                .map(revoked -> new AllowedUserResponse(false));
+    }
+
     // 대기표 확인
     @GetMapping("/rank")
     public Mono<RankNumberResponse> getRank(
             @RequestParam(name = "queue", defaultValue = "default") String queue,
             @RequestParam(name = "user_id") Long userId) {
         return userQueueService.getRank(queue, userId)
-                .map(RankNumberResponse::new);
+                .map(rank -> new RankNumberResponse(rank, userQueueService.estimateWaitSeconds(queue, rank)));
+    }
+
+    // 대기표 대량 확인 ( NDJSON : 한 줄에 user_id 하나 )
+    @PostMapping(value = "/rank/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkRankNumberResponse> getRanks(
+            @RequestParam(name = "queue", defaultValue = "default") String queue,
+            @RequestBody Flux<Long> userIds) {
+        return userQueueService.getRankBulk(queue, userIds)
+                .map(ranked -> new BulkRankNumberResponse(ranked.getT1(), ranked.getT2()));
+    }
+
+    // 대기표 실시간 확인 (SSE)
+    @GetMapping(value = "/rank/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RankNumberResponse>> streamRank(
+            @RequestParam(name = "queue", defaultValue = "default") String queue,
+            @RequestParam(name = "user_id") Long userId) {
+        var ranks = userQueueService.streamRank(queue, userId)
+                .map(rank -> ServerSentEvent.builder(new RankNumberResponse(rank, userQueueService.estimateWaitSeconds(queue, rank))).event("rank").build());
+
+        // 프록시에서 유휴 커넥션이 끊기지 않도록 주기적으로 comment 전송
+        var keepAlive = Flux.interval(KEEP_ALIVE_INTERVAL)
+                .map(tick -> ServerSentEvent.<RankNumberResponse>builder().comment("keep-alive").build());
+
+        return Flux.merge(ranks, keepAlive)
+                .takeUntil(event -> event.data() != null && event.data().rank() < 0); // 진입 허용되면 스트림 종료
     }
 
     // 대기열 이탈
@@ -65,12 +126,12 @@ public class UserQueueController {
     Mono<?> touch(@RequestParam(name = "queue", defaultValue = "default") String queue,
                   @RequestParam(name = "user_id") Long userId,
                   ServerWebExchange exchange
-    ) throws NoSuchAlgorithmException {
+    ) {
         return userQueueService.generateToken(queue, userId).map(token -> {
              exchange.getResponse().addCookie(
                     ResponseCookie
                             .from("user-queue-%s-token".formatted(queue), token)
-                            .maxAge(Duration.ofSeconds(300))
+                            .maxAge(tokenGenerator.getTtl())
                             .path("/")
                             .build()
             );
@@ -1,33 +1,54 @@
 package com.example.flow.controller;
 
 import com.example.flow.service.UserQueueService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.reactive.result.view.Rendering;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+
 
 @Controller
-@RequiredArgsConstructor
 public class WaitingRoomController {
 
     private final UserQueueService userQueueService;
 
+    // 대기실 페이지 ( 사용자와 상관없이 같은 내용, 순번은 페이지에서 SSE 로 받는다 )
+    private final byte[] waitingRoomPage;
+
+    private final String waitingRoomETag;
+
+    public WaitingRoomController(UserQueueService userQueueService) {
+        this.userQueueService = userQueueService;
+        try {
+            this.waitingRoomPage = new ClassPathResource("static/waiting-room.html").getContentAsByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.waitingRoomETag = "\"" + DigestUtils.md5DigestAsHex(waitingRoomPage) + "\"";
+    }
+
     @GetMapping("/waiting-room")
-    Mono<Rendering> waitRoomPage(
+    Mono<ResponseEntity<byte[]>> waitRoomPage(
             @RequestParam(name = "queue", defaultValue = "default") String queue,
             @RequestParam(name = "user_id") Long userId,
             @RequestParam(name = "redirect_url") String redirect_url,
             ServerWebExchange exchange
-    ) throws NoSuchAlgorithmException {
+    ) {
 
         // 대기 등록
-        // 웹페이지 필요한 데이터를 전달
+        // 웹페이지는 미리 만들어둔 그대로 내려준다 ( 렌더링 없음 )
 
 
         // 1. 입장이 허용되어 page redirect(이동)이 가능한 상태인가 ?
@@ -39,16 +60,14 @@ public class WaitingRoomController {
 
         return userQueueService.isAllowedByToken(queue, userId,token) // 순번을 다 기다린 상태
                 .filter(allowed -> allowed) //진입가능상태
-                .flatMap(allowed -> Mono.just(Rendering.redirectTo(redirect_url).build())) // 메인홈페이지로 이동
+                .map(allowed -> ResponseEntity.status(HttpStatus.FOUND).location(URI.create(redirect_url)).<byte[]>build()) // 메인홈페이지로 이동
                 .switchIfEmpty( // 진입이 불가능한상태는 , > 대기열에 등록이 안되어있는상태
-                        userQueueService.registerWaitQueue(queue, userId) // 대기열에 등록해준다
-                                .onErrorResume(ex -> userQueueService.getRank(queue, userId)) // 이미 대기열에 등록되서 대기표 번호를 받는다
-                                .map(rank -> Rendering.view("/waiting-room.html") // 다시 페이지로 이동한다.
-                                        .modelAttribute("number", rank)
-                                        .modelAttribute("userId", userId)
-                                        .modelAttribute("queue", queue)
-                                        .build()
-                                )
+                        userQueueService.registerOrGetRank(queue, userId) // 대기열에 등록하거나 이미 등록되어 있으면 그대로 ( redis 조회 한번 )
+                                .map(rank -> ResponseEntity.ok() // 새로고침은 ETag 가 같으면 304 로 본문 없이 응답
+                                        .contentType(MediaType.TEXT_HTML)
+                                        .cacheControl(CacheControl.noCache())
+                                        .eTag(waitingRoomETag)
+                                        .body(waitingRoomPage))
                 );
 
     }
@@ -0,0 +1,4 @@
+package com.example.flow.dto;
+
+public record BulkRankNumberResponse(Long userId, Long rank) {
+}
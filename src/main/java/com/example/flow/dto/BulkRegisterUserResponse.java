@@ -0,0 +1,4 @@
+package com.example.flow.dto;
+
+public record BulkRegisterUserResponse(Long userId, Long rank, Boolean registered) {
+}
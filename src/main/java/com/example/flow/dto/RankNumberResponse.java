@@ -1,4 +1,5 @@
 package com.example.flow.dto;
 
-public record RankNumberResponse(Long rank) {
+// etaSeconds == 예상 대기 시간 ( 초 ), 알 수 없으면 null
+public record RankNumberResponse(Long rank, Long etaSeconds) {
 }
@@ -7,6 +7,8 @@ import org.springframework.http.HttpStatus;
 @AllArgsConstructor
 @Getter
 public class ApplicationException extends RuntimeException{
+    private static final long serialVersionUID = 1L;
+
     private HttpStatus httpStatus;
     private String code;
     private String reason;
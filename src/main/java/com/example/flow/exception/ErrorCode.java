@@ -1,12 +1,17 @@
 package com.example.flow.exception;
 
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.springframework.http.HttpStatus;
 
 
+@Getter
 @AllArgsConstructor
 public enum ErrorCode {
-    QUEUE_ALREADY_REGISTERED_USER(HttpStatus.CONFLICT,"UQ-0001","Already Registered in queue");
+    QUEUE_ALREADY_REGISTERED_USER(HttpStatus.CONFLICT,"UQ-0001","Already Registered in queue"),
+    QUEUE_NOT_ALLOWED_USER(HttpStatus.FORBIDDEN,"UQ-0002","Not allowed in queue yet"),
+    QUEUE_TOO_MANY_REQUESTS(HttpStatus.TOO_MANY_REQUESTS,"UQ-0003","Too many requests"),
+    QUEUE_UNAUTHORIZED(HttpStatus.UNAUTHORIZED,"UQ-0004","Unauthorized");
    // QUEUE_ALREADY_REGISTERED_US12ER2(HttpStatus.CONFLICT,"UQ-0001","Already Registered in queue in %s");
 
     private final HttpStatus httpStatus;
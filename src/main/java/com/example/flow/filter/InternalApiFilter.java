@@ -0,0 +1,55 @@
+package com.example.flow.filter;
+
+import com.example.flow.config.InternalApiProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static com.example.flow.exception.ErrorCode.QUEUE_UNAUTHORIZED;
+
+// 내부 API ( 입장 토큰 회수 등 ) 는 공유 키가 맞을 때만 컨트롤러까지 보낸다
+// 키가 설정되지 않았으면 내부 API 는 모두 401 ( 열어둔 채로 배포되지 않도록 )
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class InternalApiFilter implements WebFilter {
+
+    public static final String SECRET_HEADER = "X-Queue-Internal-Secret";
+
+    private static final byte[] UNAUTHORIZED_BODY = "{\"code\":\"%s\",\"reason\":\"%s\"}"
+            .formatted(QUEUE_UNAUTHORIZED.getCode(), QUEUE_UNAUTHORIZED.getReason())
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final InternalApiProperties internalApiProperties;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var endpoint = request.getMethod().name() + " " + request.getPath().pathWithinApplication().value();
+        if (!internalApiProperties.getEndpoints().contains(endpoint) || matches(request.getHeaders().getFirst(SECRET_HEADER))) {
+            return chain.filter(exchange);
+        }
+        var response = exchange.getResponse();
+        response.setStatusCode(QUEUE_UNAUTHORIZED.getHttpStatus());
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(UNAUTHORIZED_BODY)));
+    }
+
+    // 상수 시간 비교
+    private boolean matches(final String secret) {
+        var expected = internalApiProperties.getSecret();
+        if (expected == null || expected.isBlank() || secret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.flow.filter;
+
+import com.example.flow.config.RateLimitProperties;
+import com.example.flow.service.RateLimiter;
+import com.example.flow.service.UserQueueMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.flow.exception.ErrorCode.QUEUE_TOO_MANY_REQUESTS;
+
+// 대기열 API 요청 제한 ( 설정된 경로만, user_id 별 / 접속 IP 별 )
+// 제한에 걸리면 컨트롤러까지 가지 않고 429 + Retry-After ( 초 ) 로 응답
+// 프록시 뒤에 있으면 server.forward-headers-strategy 로 실제 접속 IP 가 보이도록 설정
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class RateLimitFilter implements WebFilter {
+
+    private static final byte[] TOO_MANY_REQUESTS_BODY = "{\"code\":\"%s\",\"reason\":\"%s\"}"
+            .formatted(QUEUE_TOO_MANY_REQUESTS.getCode(), QUEUE_TOO_MANY_REQUESTS.getReason())
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final RateLimitProperties rateLimitProperties;
+
+    private final RateLimiter rateLimiter;
+
+    private final UserQueueMetrics userQueueMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!rateLimitProperties.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        var path = exchange.getRequest().getPath().pathWithinApplication().value();
+        var endpoint = rateLimitProperties.getEndpoints().get(path);
+        if (endpoint == null) {
+            return chain.filter(exchange);
+        }
+
+        var userId = exchange.getRequest().getQueryParams().getFirst("user_id");
+        var remoteAddress = exchange.getRequest().getRemoteAddress();
+        var ip = remoteAddress == null ? null : remoteAddress.getAddress().getHostAddress();
+
+        // user_id 먼저 확인하고 통과하면 IP 확인
+        return acquire(path, "user", userId, endpoint.getUser())
+                .flatMap(wait -> wait > 0 ? Mono.just(wait) : acquire(path, "ip", ip, endpoint.getIp()))
+                .flatMap(wait -> wait > 0 ? reject(exchange, wait) : chain.filter(exchange));
+    }
+
+    private Mono<Long> acquire(final String path, final String client, final String value, final RateLimitProperties.Limit limit) {
+        if (limit == null || value == null) {
+            return Mono.just(0L);
+        }
+        return rateLimiter.acquire(path + ":" + client + ":" + value, limit)
+                .doOnNext(wait -> {
+                    if (wait > 0) {
+                        userQueueMetrics.rateLimited(path, client);
+                    }
+                });
+    }
+
+    private Mono<Void> reject(final ServerWebExchange exchange, final long waitNanos) {
+        var response = exchange.getResponse();
+        response.setStatusCode(QUEUE_TOO_MANY_REQUESTS.getHttpStatus());
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1L, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(TOO_MANY_REQUESTS_BODY)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.flow.service;
+
+import org.springframework.data.redis.connection.stream.MapRecord;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+// 진입 허용 이벤트 ( 진입 허용 한번에 하나, stream 레코드 : queue, admittedAt, userIds = "1,2,3" ( 대기열 member, MemberCodec ) )
+// stream == 읽어온 stream 키 ( 샤드 대기열은 샤드마다 다름 ), id == stream 레코드 id ( ack 할 때 사용 )
+// admittedAt == 허용 시각 epoch millis
+public record AdmissionEvent(String stream, String id, String queue, Long admittedAt, List<Long> userIds) {
+
+    public static AdmissionEvent from(MapRecord<String, String, String> record) {
+        var value = record.getValue();
+        var userIds = Arrays.stream(value.get("userIds").split(",")).map(MemberCodec::decode).toList();
+        return new AdmissionEvent(record.getStream(), record.getId().getValue(), value.get("queue"), admittedAtMillis(Double.parseDouble(value.get("admittedAt"))), userIds);
+    }
+
+    // 허용 시각 -> 허용열 score / stream admittedAt 값 ( epoch seconds, 소수점 아래 millis )
+    // seconds 단위라서 이전 버전의 정수 score 와 정리 기준 ( epoch seconds ) 을 그대로 쓸 수 있다
+    public static String admittedAtScore(final long millis) {
+        return BigDecimal.valueOf(millis, 3).toPlainString();
+    }
+
+    // 허용열 score -> 허용 시각 epoch millis
+    public static long admittedAtMillis(final double score) {
+        return Math.round(score * 1000);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.flow.service;
+
+// 보호 중인 서비스의 응답 지연 / 에러 신호 ( payload : "latencyMillis:error:queue" )
+public record AdmissionFeedbackEvent(String queue, Long latencyMillis, Boolean error) {
+
+    public String encode() {
+        return "%d:%d:%s".formatted(latencyMillis, error ? 1 : 0, queue);
+    }
+
+    public static AdmissionFeedbackEvent decode(String payload) {
+        var parts = payload.split(":", 3);
+        return new AdmissionFeedbackEvent(parts[2], Long.parseLong(parts[0]), "1".equals(parts[1]));
+    }
+}
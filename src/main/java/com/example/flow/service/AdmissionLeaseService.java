@@ -0,0 +1,163 @@
+package com.example.flow.service;
+
+import com.example.flow.config.SchedulerProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 스케쥴러 리스 ( 노드 여러대에서 같은 대기열을 중복으로 허용하지 않도록 )
+// - 대기열은 queue 이름의 해시로 샤드에 배정된다
+// - 샤드마다 리스를 가진 노드 하나만 진입 허용을 처리한다
+// - 리스를 새로 얻을 때마다 펜싱 토큰이 증가하고, 진입 허용 스크립트가 토큰을 검사해서 리스를 잃은 노드의 요청을 거절한다
+@Log4j2
+@Service
+public class AdmissionLeaseService {
+
+    // 샤드 리스 ( value : nodeId )
+    private final String USER_QUEUE_LEASE_KEY = "users:queue:lease:%d";
+
+    // 샤드 펜싱 토큰
+    private final String USER_QUEUE_LEASE_FENCE_KEY = "users:queue:lease:%d:fence";
+
+    // 살아있는 스케쥴러 노드 목록
+    private final String USER_QUEUE_NODES_KEY = "users:queue:nodes";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final UserQueueScripts userQueueScripts;
+
+    private final int shards;
+
+    private final Duration ttl;
+
+    @Getter
+    private final String nodeId;
+
+    // 현재 노드가 가진 샤드 -> 펜싱 토큰
+    private final Map<Integer, Long> ownedShards = new ConcurrentHashMap<>();
+
+    // 마지막 갱신 시각 ( System.nanoTime )
+    private volatile long renewedAt = Long.MIN_VALUE;
+
+    public AdmissionLeaseService(ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                                 UserQueueScripts userQueueScripts,
+                                 SchedulerProperties schedulerProperties) {
+        var lease = schedulerProperties.getLease();
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.userQueueScripts = userQueueScripts;
+        this.shards = lease.getShards();
+        this.ttl = lease.getTtl();
+        this.nodeId = (lease.getNodeId() == null || lease.getNodeId().isBlank()) ? UUID.randomUUID().toString() : lease.getNodeId();
+    }
+
+    // 대기열이 속한 샤드
+    public int shardOf(final String queue) {
+        return Math.floorMod(queue.hashCode(), shards);
+    }
+
+    // 펜싱 토큰 키
+    public String fenceKey(final String queue) {
+        return USER_QUEUE_LEASE_FENCE_KEY.formatted(shardOf(queue));
+    }
+
+    // 대기열을 담당하고 있으면 펜싱 토큰, 아니면 null
+    public Long fenceOf(final String queue) {
+        return ownedShards.get(shardOf(queue));
+    }
+
+    // 리스 유지 시간의 1/3 이 지났을 때만 갱신 ( 스케쥴링 주기가 짧아도 redis 호출이 늘지 않도록 )
+    public Mono<Map<Integer, Long>> renewIfDue() {
+        if (renewedAt != Long.MIN_VALUE && System.nanoTime() - renewedAt < ttl.toNanos() / 3) {
+            return Mono.just(Map.copyOf(ownedShards));
+        }
+        return renew();
+    }
+
+    // 리스 갱신
+    // 살아있는 노드 수로 나눈 몫만큼만 샤드를 가져서 노드끼리 진입 허용 작업을 나눠 갖는다
+    public Mono<Map<Integer, Long>> renew() {
+        var now = Instant.now().toEpochMilli();
+        return reactiveRedisTemplate.execute(userQueueScripts.getNodeHeartbeat(),
+                        List.of(USER_QUEUE_NODES_KEY),
+                        List.of(nodeId, String.valueOf(now), String.valueOf(now + ttl.toMillis())))
+                .next()
+                .flatMap(liveNodes -> {
+                    var fairShare = (int) Math.ceil((double) shards / Math.max(liveNodes, 1L));
+
+                    // 이미 가진 샤드를 먼저 갱신하고, 남는 몫만큼 빈 샤드를 가져온다
+                    var ordered = new ArrayList<Integer>(ownedShards.keySet());
+                    for (int shard = 0; shard < shards; shard++) {
+                        if (!ownedShards.containsKey(shard)) {
+                            ordered.add(shard);
+                        }
+                    }
+
+                    return Flux.fromIterable(ordered)
+                            .concatMap(shard -> ownedShards.containsKey(shard) && ownedShards.size() > fairShare
+                                    ? release(shard) // 새 노드가 들어와서 몫이 줄었으면 반납
+                                    : acquire(shard, ownedShards.size() < fairShare))
+                            .then(Mono.fromSupplier(() -> {
+                                renewedAt = System.nanoTime();
+                                return Map.copyOf(ownedShards);
+                            }));
+                });
+    }
+
+    // 가진 리스를 모두 반납 ( 종료시 다른 노드가 바로 이어받도록 )
+    public Mono<Void> releaseAll() {
+        return Flux.fromIterable(List.copyOf(ownedShards.keySet()))
+                .concatMap(this::release)
+                .then(reactiveRedisTemplate.opsForZSet().remove(USER_QUEUE_NODES_KEY, nodeId))
+                .then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownedShards.isEmpty()) {
+            return ;
+        }
+        releaseAll()
+                .doOnError(ex -> log.warn("failed to release scheduler leases", ex))
+                .onErrorComplete()
+                .block(Duration.ofSeconds(2));
+    }
+
+    private Mono<Void> acquire(final int shard, final boolean mayAcquire) {
+        return reactiveRedisTemplate.execute(userQueueScripts.getAcquireLease(),
+                        List.of(USER_QUEUE_LEASE_KEY.formatted(shard), USER_QUEUE_LEASE_FENCE_KEY.formatted(shard)),
+                        List.of(nodeId, String.valueOf(ttl.toMillis()), mayAcquire ? "1" : "0"))
+                .next()
+                .doOnNext(fence -> {
+                    if (fence > 0) {
+                        if (ownedShards.put(shard, fence) == null) {
+                            log.info("acquired scheduler lease of shard %d ( fence %d )".formatted(shard, fence));
+                        }
+                    } else if (ownedShards.remove(shard) != null) {
+                        log.warn("lost scheduler lease of shard %d".formatted(shard));
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> release(final int shard) {
+        ownedShards.remove(shard);
+        return reactiveRedisTemplate.execute(userQueueScripts.getReleaseLease(),
+                        List.of(USER_QUEUE_LEASE_KEY.formatted(shard)),
+                        List.of(nodeId))
+                .next()
+                .doOnNext(released -> log.info("released scheduler lease of shard %d".formatted(shard)))
+                .then();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.flow.service;
+
+import com.example.flow.service.store.QueueStore;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 입장 토큰 회수
+// - 회수 목록은 redis 에 두고, 노드마다 로컬 사본을 pub/sub 으로 맞춰서 토큰 검증시 redis 를 조회하지 않는다
+// - 토큰 유효 시간이 지난 회수 기록은 의미가 없어서 정리 주기마다 ( redis, 로컬 모두 ) 지운다
+// - 회수 / 허용 시각은 millis 로 비교해서 같은 초에 회수된 뒤 다시 허용된 사용자는 회수되지 않은 것으로 본다
+// - 로컬 저장소면 노드 하나뿐이라 로컬 목록만 사용
+@Log4j2
+@Service
+public class AdmissionRevocationService {
+
+    // 이보다 작으면 이전 버전의 epoch seconds 값 ( 토큰 admittedAt / 회수 알림 )
+    private static final long EPOCH_MILLIS_MIN = 100_000_000_000L;
+
+    // 회수 목록 ( member : "{queue}:{userId}", score : 회수 시각 epoch seconds, 소수점 아래 millis )
+    private final String USER_QUEUE_REVOKED_KEY = "users:queue:revoked";
+
+    // 회수 알림 채널 ( payload : "{revokedAt millis}:{queue}:{userId}" )
+    private final String USER_QUEUE_REVOKED_CHANNEL = "users:queue:revoked";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer;
+
+    private final Duration ttl;
+
+    private final boolean local;
+
+    // "{queue}:{userId}" -> 회수 시각 epoch millis
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public AdmissionRevocationService(ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                                      ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer,
+                                      TokenGenerator tokenGenerator,
+                                      QueueStore queueStore) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.ttl = tokenGenerator.getTtl();
+        this.local = queueStore.isLocal();
+    }
+
+    // 회수 여부 ( admittedAt 이후에 회수되었으면 true )
+    public boolean isRevoked(final String queue, final long userId, final long admittedAt) {
+        var revokedAt = revoked.get(member(queue, userId));
+        return revokedAt != null && revokedAt > millis(admittedAt);
+    }
+
+    // 입장 토큰 회수 ( admittedAt == 지금 허용된 시각 epoch millis, 허용되지 않았으면 0 )
+    // 허용과 회수가 같은 millis 여도 지금 토큰은 회수되도록 회수 시각을 허용 시각 뒤로 둔다
+    public Mono<Long> revoke(final String queue, final Long userId, final long admittedAt) {
+        var revokedAt = Math.max(System.currentTimeMillis(), admittedAt + 1);
+        var member = member(queue, userId);
+        revoked.merge(member, revokedAt, Math::max);
+        if (local) {
+            return Mono.just(0L);
+        }
+        return reactiveRedisTemplate.opsForZSet().add(USER_QUEUE_REVOKED_KEY, member, revokedAt / 1000.0)
+                .then(reactiveRedisTemplate.convertAndSend(USER_QUEUE_REVOKED_CHANNEL, revokedAt + ":" + member));
+    }
+
+    // 만료된 회수 기록 정리
+    @Scheduled(fixedDelayString = "${scheduler.sweep.interval:5000}", initialDelay = 5000)
+    public void scheduleExpire() {
+        expire()
+                .doOnError(ex -> log.warn("failed to expire revocations", ex))
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    // 토큰 유효 시간이 지난 회수 기록을 로컬 / redis 에서 지운다 ( 지운 redis 기록 수 )
+    public Mono<Long> expire() {
+        var expired = System.currentTimeMillis() - ttl.toMillis();
+        revoked.values().removeIf(revokedAt -> revokedAt < expired);
+        if (local) {
+            return Mono.just(0L);
+        }
+        return reactiveRedisTemplate.opsForZSet().removeRangeByScore(USER_QUEUE_REVOKED_KEY, Range.closed(Double.NEGATIVE_INFINITY, expired / 1000.0));
+    }
+
+    // 시작시 회수 목록을 읽어오고 이후 변경은 pub/sub 으로 받는다
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (local) {
+            return ;
+        }
+        Mono.defer(() -> listenerContainer.getObject().receiveLater(ChannelTopic.of(USER_QUEUE_REVOKED_CHANNEL)))
+                .flatMapMany(messages -> load().thenMany(messages))
+                .doOnNext(message -> {
+                    var payload = message.getMessage();
+                    var separator = payload.indexOf(':');
+                    revoked.merge(payload.substring(separator + 1), millis(Long.parseLong(payload, 0, separator, 10)), Math::max);
+                })
+                .doOnError(ex -> log.warn("revocation subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .subscribe();
+    }
+
+    // 만료된 회수 기록을 지우고 나머지를 로컬로 복사
+    private Mono<Void> load() {
+        return expire()
+                .thenMany(reactiveRedisTemplate.opsForZSet().rangeWithScores(USER_QUEUE_REVOKED_KEY, Range.closed(0L, -1L)))
+                .doOnNext(entry -> revoked.merge(entry.getValue(), Math.round(entry.getScore() * 1000), Math::max))
+                .then();
+    }
+
+    private String member(final String queue, final long userId) {
+        return queue + ":" + userId;
+    }
+
+    // 이전 버전 토큰 / 회수 알림의 epoch seconds 를 millis 로
+    private static long millis(final long epoch) {
+        return epoch < EPOCH_MILLIS_MIN ? epoch * 1000 : epoch;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.flow.service;
+
+import com.example.flow.config.AdmissionStreamProperties;
+import com.example.flow.config.ShardingProperties;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.stream.StreamReceiver;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// 진입 허용 이벤트 stream ( redis 저장소 )
+// - 진입 허용 스크립트가 wait -> proceed 이동과 같이 XADD 하므로 이벤트가 빠지거나 허용 없이 남지 않는다
+// - 보호 중인 서비스는 consumer group 으로 읽고 처리한 이벤트를 ack 한다 ( 허용열을 훑지 않아도 됨 )
+// - 읽기는 구독한 쪽의 요청만큼만 가져온다 ( backpressure )
+// - ack 하지 않은 이벤트는 group 의 pending 목록에 남아서 claimPending ( XPENDING / XCLAIM ) 으로 다시 처리한다
+// - stream 은 마지막 진입 허용부터 ttl 이 지나면 지워진다 ( 비워진 대기열의 stream 이 남지 않도록 )
+@Log4j2
+@Service
+public class AdmissionStreamService {
+
+    // 진입 허용 이벤트
+    private final String USER_QUEUE_ADMITTED_STREAM_KEY = "users:queue:%s:admitted";
+
+    // 샤드 진입 허용 이벤트 ( 샤드 대기열 키와 같은 슬롯 )
+    private final String USER_QUEUE_SHARD_ADMITTED_STREAM_KEY = "users:queue:{%s:%d}:admitted";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final ShardingProperties shardingProperties;
+
+    private final AdmissionStreamProperties admissionStreamProperties;
+
+    private final StreamReceiver<String, MapRecord<String, String, String>> streamReceiver;
+
+    public AdmissionStreamService(ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                                  ReactiveRedisConnectionFactory connectionFactory,
+                                  ShardingProperties shardingProperties,
+                                  AdmissionStreamProperties admissionStreamProperties) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.shardingProperties = shardingProperties;
+        this.admissionStreamProperties = admissionStreamProperties;
+        this.streamReceiver = StreamReceiver.create(connectionFactory, StreamReceiver.StreamReceiverOptions.builder()
+                .batchSize(admissionStreamProperties.getReadBatchSize())
+                .pollTimeout(admissionStreamProperties.getPollTimeout())
+                .build());
+    }
+
+    public String streamKey(final String queue) {
+        return USER_QUEUE_ADMITTED_STREAM_KEY.formatted(queue);
+    }
+
+    public String shardStreamKey(final String queue, final int shard) {
+        return USER_QUEUE_SHARD_ADMITTED_STREAM_KEY.formatted(queue, shard);
+    }
+
+    // 대기열의 stream 키 ( 샤드 대기열이면 샤드마다 하나 )
+    public List<String> streamKeys(final String queue) {
+        var shards = shardingProperties.shardsOf(queue);
+        return shards > 1
+                ? IntStream.range(0, shards).mapToObj(shard -> shardStreamKey(queue, shard)).toList()
+                : List.of(streamKey(queue));
+    }
+
+    // 스크립트에 넘길 최대 길이 ( 0 이면 남기지 않음 )
+    public String maxLength() {
+        return admissionStreamProperties.isEnabled() ? String.valueOf(admissionStreamProperties.getMaxLength()) : "0";
+    }
+
+    // 스크립트에 넘길 stream 보관 시간 ( 초 )
+    public String ttlSeconds() {
+        return String.valueOf(Math.max(1L, admissionStreamProperties.getTtl().toSeconds()));
+    }
+
+    // consumer group 으로 진입 허용 이벤트 구독 ( group 이 없으면 stream 의 처음부터 읽도록 만든다 )
+    // 샤드 대기열은 샤드 stream 을 합쳐서 받는다 ( 샤드 사이 순서는 보장하지 않음 )
+    public Flux<AdmissionEvent> consume(final String queue, final String group, final String consumer) {
+        return Flux.fromIterable(streamKeys(queue))
+                .flatMap(key -> createGroup(key, group)
+                        .thenMany(streamReceiver.receive(Consumer.from(group, consumer), StreamOffset.create(key, ReadOffset.lastConsumed()))))
+                .map(AdmissionEvent::from);
+    }
+
+    // 처리한 이벤트 ack
+    public Mono<Long> ack(final AdmissionEvent event, final String group) {
+        return reactiveRedisTemplate.opsForStream().acknowledge(event.stream(), group, event.id());
+    }
+
+    // 죽은 consumer 가 ack 하지 않고 minIdle 이상 지난 이벤트를 consumer 로 가져온다 ( XPENDING + XCLAIM )
+    // 가져온 이벤트는 consume 으로 받은 이벤트처럼 처리하고 ack 한다 ( 샤드 대기열은 샤드 stream 마다 최대 count 개 )
+    public Flux<AdmissionEvent> claimPending(final String queue, final String group, final String consumer, final Duration minIdle, final long count) {
+        var streamOperations = reactiveRedisTemplate.<String, String>opsForStream();
+        return Flux.fromIterable(streamKeys(queue))
+                .concatMap(key -> streamOperations.pending(key, group, Range.unbounded(), count)
+                        .flatMapMany(pending -> {
+                            var ids = pending.stream()
+                                    .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                                    .map(PendingMessage::getId)
+                                    .toArray(RecordId[]::new);
+                            return ids.length == 0 ? Flux.empty() : streamOperations.claim(key, group, consumer, minIdle, ids);
+                        }))
+                .map(AdmissionEvent::from);
+    }
+
+    private Mono<Void> createGroup(final String key, final String group) {
+        return reactiveRedisTemplate.opsForStream().createGroup(key, ReadOffset.from("0"), group)
+                .onErrorResume(ex -> {
+                    if (String.valueOf(ex.getMessage()).contains("BUSYGROUP") || (ex.getCause() != null && String.valueOf(ex.getCause().getMessage()).contains("BUSYGROUP"))) {
+                        return Mono.empty(); // 이미 있는 group
+                    }
+                    return Mono.error(ex);
+                })
+                .then();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.flow.service;
+
+import com.example.flow.config.MemberProperties;
+import com.example.flow.config.MemberProperties.Encoding;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// 대기열 member ( userId ) 인코딩
+// - decimal : "1700000000000000123" ( 19 byte )
+// - base62  : "~21a17KPWDnP" ( 12 byte, userId 를 부호 없는 64bit 로 보고 62진수 )
+// wait / seen / proceed 키와 진입 허용 이벤트가 모두 같은 member 를 쓴다
+// 읽을 때는 '~' 로 두 인코딩을 구분하므로 인코딩을 바꾸는 중에도 섞여있는 member 를 모두 읽을 수 있다
+@Component
+@RequiredArgsConstructor
+public class MemberCodec {
+
+    // base62 member 표시 ( 10진수에는 나오지 않는 문자 )
+    private static final char BASE62_PREFIX = '~';
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final MemberProperties memberProperties;
+
+    // 새로 저장할 member
+    public String encode(final long userId) {
+        return encode(memberProperties.getEncoding(), userId);
+    }
+
+    // 인코딩을 바꾸는 중이면 이전 인코딩 member, 아니면 빈 문자열 ( 스크립트는 빈 문자열이면 확인하지 않음 )
+    public String legacy(final long userId) {
+        if (!memberProperties.isMigrating()) {
+            return "";
+        }
+        return encode(memberProperties.getEncoding() == Encoding.DECIMAL ? Encoding.BASE62 : Encoding.DECIMAL, userId);
+    }
+
+    public boolean isMigrating() {
+        return memberProperties.isMigrating();
+    }
+
+    public static String encode(final Encoding encoding, final long userId) {
+        if (encoding == Encoding.DECIMAL) {
+            return Long.toString(userId);
+        }
+        var buffer = new char[12];
+        var index = buffer.length;
+        var value = userId;
+        do {
+            buffer[--index] = DIGITS[(int) Long.remainderUnsigned(value, DIGITS.length)];
+            value = Long.divideUnsigned(value, DIGITS.length);
+        } while (value != 0);
+        buffer[--index] = BASE62_PREFIX;
+        return new String(buffer, index, buffer.length - index);
+    }
+
+    // 두 인코딩 모두 읽는다
+    public static long decode(final String member) {
+        if (member.isEmpty() || member.charAt(0) != BASE62_PREFIX) {
+            return Long.parseLong(member);
+        }
+        long value = 0;
+        for (int i = 1; i < member.length(); i++) {
+            value = value * DIGITS.length + digit(member.charAt(i));
+        }
+        return value;
+    }
+
+    private static int digit(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        throw new NumberFormatException("invalid base62 member digit : " + c);
+    }
+}
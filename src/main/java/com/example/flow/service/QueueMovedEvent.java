@@ -0,0 +1,20 @@
+package com.example.flow.service;
+
+// 대기열 선두가 이동했다는 이벤트 ( payload : "allowed:head:queue" )
+// head == 지금까지 허용된 누적 인원, 정리(떠난 대기자 제거)처럼 순번이 불규칙하게 바뀌면 -1 ( INVALIDATE )
+// redis 데이터를 초기화해서 누적 인원이 되돌아갔으면 -2 ( RESET, 운영자가 PUBLISH users:queue:moved 0:-2:{queue} 로 보낸다 )
+public record QueueMovedEvent(String queue, Long allowed, Long head) {
+
+    public static final long INVALIDATE = -1L;
+
+    public static final long RESET = -2L;
+
+    public String encode() {
+        return "%d:%d:%s".formatted(allowed, head, queue);
+    }
+
+    public static QueueMovedEvent decode(String payload) {
+        var parts = payload.split(":", 3);
+        return new QueueMovedEvent(parts[2], Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+    }
+}
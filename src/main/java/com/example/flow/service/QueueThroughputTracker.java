@@ -0,0 +1,132 @@
+package com.example.flow.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 대기열별 진입 허용 속도 ( 최근 60초 이동 평균, 초당 허용 인원 )
+// 진입 허용은 리스를 가진 노드에서만 일어나서, 모든 노드가 대기열 이동 이벤트로 같은 값을 집계한다
+// 대기열 이름은 client 가 정하므로 WINDOW_SECONDS 동안 허용이 없는 대기열은 노드마다 잊는다
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class QueueThroughputTracker {
+
+    static final int WINDOW_SECONDS = 60;
+
+    private final UserQueueEventService userQueueEventService;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        userQueueEventService.movedAll()
+                .filter(event -> event.allowed() > 0)
+                .doOnNext(event -> record(event.queue(), event.allowed()))
+                .doOnError(ex -> log.warn("throughput subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .subscribe();
+    }
+
+    public void record(final String queue, final long allowed) {
+        record(queue, allowed, System.currentTimeMillis());
+    }
+
+    // 초당 허용 인원
+    public double ratePerSecond(final String queue) {
+        return ratePerSecond(queue, System.currentTimeMillis());
+    }
+
+    // 예상 대기 시간 ( 초 ), 아직 허용된 적이 없어서 알 수 없으면 null
+    public Long estimateWaitSeconds(final String queue, final long rank) {
+        return estimateWaitSeconds(queue, rank, System.currentTimeMillis());
+    }
+
+    // 정리와 겹쳐도 집계가 빠지지 않도록 compute 안에서 추가
+    void record(final String queue, final long allowed, final long nowMillis) {
+        windows.compute(queue, (key, window) -> {
+            var recorded = window == null ? new Window(nowMillis) : window;
+            recorded.add(nowMillis / 1000, allowed);
+            return recorded;
+        });
+    }
+
+    @Scheduled(fixedDelay = WINDOW_SECONDS * 1000L, initialDelay = WINDOW_SECONDS * 1000L)
+    public void scheduleEvict() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    // WINDOW_SECONDS 동안 허용이 없는 대기열 ( 속도 0 ) 을 잊는다
+    void evictIdle(final long nowMillis) {
+        windows.keySet().forEach(queue -> windows.computeIfPresent(queue, (key, window) -> window.isIdle(nowMillis) ? null : window));
+    }
+
+    int size() {
+        return windows.size();
+    }
+
+    double ratePerSecond(final String queue, final long nowMillis) {
+        var window = windows.get(queue);
+        return window == null ? 0d : window.rate(nowMillis);
+    }
+
+    Long estimateWaitSeconds(final String queue, final long rank, final long nowMillis) {
+        if (rank <= 0) {
+            return rank < 0 ? null : 0L;
+        }
+        var rate = ratePerSecond(queue, nowMillis);
+        return rate > 0 ? (long) Math.ceil(rank / rate) : null;
+    }
+
+    // 초 단위 버킷을 WINDOW_SECONDS 개 돌려 쓰는 링 버퍼
+    private static class Window {
+
+        private final long startedAtMillis;
+
+        private final long[] seconds = new long[WINDOW_SECONDS];
+
+        private final long[] counts = new long[WINDOW_SECONDS];
+
+        // 마지막으로 허용된 초
+        private long lastSecond;
+
+        Window(long startedAtMillis) {
+            this.startedAtMillis = startedAtMillis;
+        }
+
+        synchronized void add(long second, long allowed) {
+            var index = (int) (second % WINDOW_SECONDS);
+            if (seconds[index] != second) {
+                seconds[index] = second;
+                counts[index] = 0L;
+            }
+            counts[index] += allowed;
+            lastSecond = Math.max(lastSecond, second);
+        }
+
+        synchronized boolean isIdle(long nowMillis) {
+            return nowMillis / 1000 - lastSecond >= WINDOW_SECONDS;
+        }
+
+        synchronized double rate(long nowMillis) {
+            var now = nowMillis / 1000;
+            var total = 0L;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (now - seconds[i] < WINDOW_SECONDS) {
+                    total += counts[i];
+                }
+            }
+            // 집계를 시작한지 얼마 안됐으면 지난 시간만큼으로 나눈다
+            var elapsed = Math.min(WINDOW_SECONDS, Math.max(1d, (nowMillis - startedAtMillis) / 1000d));
+            return total / elapsed;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.flow.service;
+
+import com.example.flow.config.RankCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 순번 near-cache
+// - redis 에서 순번을 읽을 때 그 시점의 누적 허용 인원(head)도 같이 읽어서 "절대 위치 = 순번 + head" 로 저장
+// - 이후 진입 허용 이벤트로 head 만 갱신하면 순번 = 절대 위치 - head 로 redis 조회 없이 계산된다
+// - 떠난 대기자 정리처럼 순번이 불규칙하게 바뀌면 대기열 단위로 캐시를 무효화 ( epoch 증가 )
+// - head 는 큰 값만 반영 ( 진입 허용 전에 시작한 조회가 advance 뒤에 끝나면 redis head 가 더 작은 게 정상 )
+//   데이터 초기화로 head 가 실제로 되돌아간 경우는 RESET 이벤트로만 알 수 있다
+// - staleness 가 지나도록 저장이 없는 대기열의 head 는 지운다 ( 그 대기열의 캐시 항목은 이미 만료됨 )
+//   epoch 는 노드 전체에서 증가하는 값이라 head 를 다시 만들어도 예전 항목의 epoch 와 겹치지 않는다
+// - staleness 가 지난 항목은 다시 redis 에서 읽는다 ( 이때 heartbeat 도 같이 갱신됨 )
+@Log4j2
+@Component
+public class RankNearCache {
+
+    private final UserQueueEventService userQueueEventService;
+
+    // 캐시를 쓰지 않으면 null
+    private final Cache<RankKey, CachedRank> ranks;
+
+    private final Map<String, QueueHead> heads = new ConcurrentHashMap<>();
+
+    private final AtomicLong epochs = new AtomicLong();
+
+    private final long stalenessNanos;
+
+    public RankNearCache(RankCacheProperties rankCacheProperties, UserQueueEventService userQueueEventService) {
+        this.userQueueEventService = userQueueEventService;
+        this.stalenessNanos = rankCacheProperties.getStaleness().toNanos();
+        this.ranks = rankCacheProperties.getStaleness().isZero()
+                ? null
+                : Caffeine.newBuilder()
+                        .maximumSize(rankCacheProperties.getMaxSize())
+                        .expireAfterWrite(rankCacheProperties.getStaleness())
+                        .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (ranks == null) {
+            return ;
+        }
+        userQueueEventService.movedAll()
+                .doOnNext(event -> {
+                    if (event.head() >= 0) {
+                        advance(event.queue(), event.head());
+                    } else if (event.head() == QueueMovedEvent.RESET) {
+                        reset(event.queue());
+                    } else {
+                        invalidate(event.queue());
+                    }
+                })
+                .doOnError(ex -> log.warn("rank cache subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .subscribe();
+    }
+
+    // 캐시로 계산한 순번 ( 1부터 시작 ), 없거나 진입 허용되었을 수 있으면 null
+    public Long get(final String queue, final long userId) {
+        if (ranks == null) {
+            return null;
+        }
+        var cached = ranks.getIfPresent(new RankKey(queue, userId));
+        var head = heads.get(queue);
+        if (cached == null || head == null || cached.epoch() != head.epoch.get()) {
+            return null;
+        }
+        var rank = cached.position() - head.head.get();
+        return rank >= 1 ? rank : null;
+    }
+
+    // redis 에서 읽은 순번 ( 1부터 시작 ) 과 그 시점의 head 저장
+    public void put(final String queue, final long userId, final long rank, final long head) {
+        if (ranks == null) {
+            return ;
+        }
+        var key = new RankKey(queue, userId);
+        if (rank < 1) {
+            ranks.invalidate(key);
+            return ;
+        }
+        var state = heads.computeIfAbsent(queue, k -> newHead());
+        state.head.accumulateAndGet(head, Math::max);
+        state.touchedAt = System.nanoTime();
+        ranks.put(key, new CachedRank(rank + head, state.epoch.get()));
+    }
+
+    // 누적 허용 인원 갱신 ( 늦게 도착한 이벤트로 되돌아가지 않도록 큰 값만 반영 )
+    public void advance(final String queue, final long head) {
+        heads.computeIfAbsent(queue, key -> newHead()).head.accumulateAndGet(head, Math::max);
+    }
+
+    // 대기열의 캐시 전체 무효화
+    public void invalidate(final String queue) {
+        heads.computeIfAbsent(queue, key -> newHead()).epoch.set(epochs.incrementAndGet());
+    }
+
+    // redis 데이터 초기화로 head 가 되돌아감 ( 캐시 무효화 + head 를 0 부터 다시 )
+    public void reset(final String queue) {
+        heads.put(queue, newHead());
+    }
+
+    @Scheduled(fixedDelay = 60_000L, initialDelay = 60_000L)
+    public void scheduleEvict() {
+        evictIdle(System.nanoTime());
+    }
+
+    // staleness 가 지나도록 저장이 없는 대기열의 head 를 지운다
+    void evictIdle(final long nowNanos) {
+        heads.keySet().forEach(queue -> heads.computeIfPresent(queue, (key, state) -> nowNanos - state.touchedAt > stalenessNanos ? null : state));
+    }
+
+    int queues() {
+        return heads.size();
+    }
+
+    private QueueHead newHead() {
+        var state = new QueueHead();
+        state.epoch.set(epochs.incrementAndGet());
+        state.touchedAt = System.nanoTime();
+        return state;
+    }
+
+    // 전체 초기화
+    public void clear() {
+        if (ranks != null) {
+            ranks.invalidateAll();
+        }
+        heads.clear();
+    }
+
+    private static class QueueHead {
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong epoch = new AtomicLong();
+        // 마지막 저장 시각 ( nanoTime )
+        private volatile long touchedAt;
+    }
+
+    private record RankKey(String queue, long userId) {
+    }
+
+    // position == 순번 + 읽은 시점의 head
+    private record CachedRank(long position, long epoch) {
+    }
+}
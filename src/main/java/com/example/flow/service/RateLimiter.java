@@ -0,0 +1,82 @@
+package com.example.flow.service;
+
+import com.example.flow.config.RateLimitProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// client 별 요청 제한 ( GCRA, 초당 rate 개씩 채워지고 최대 burst 개까지 쌓이는 토큰 버킷과 같은 동작 )
+// - 버킷마다 다음 요청이 허용되는 이론상 시각 하나만 두고 CAS 로 갱신 ( lock 없음 )
+// - local : 노드 메모리 ( 노드가 N 대면 client 는 최대 N 배까지 보낼 수 있다 )
+// - redis : 모든 노드가 같은 버킷을 쓴다, redis 에 실패하면 허용
+@Log4j2
+@Component
+public class RateLimiter {
+
+    // 요청 제한 버킷 ( "{endpoint}:{client}" )
+    private final String USER_QUEUE_RATE_LIMIT_KEY = "users:queue:rate-limit:%s";
+
+    private final RateLimitProperties rateLimitProperties;
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final UserQueueScripts userQueueScripts;
+
+    // key -> 다음 요청이 허용되는 이론상 시각 ( nanoTime )
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(RateLimitProperties rateLimitProperties,
+                       ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                       UserQueueScripts userQueueScripts) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.userQueueScripts = userQueueScripts;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(rateLimitProperties.getMaxClients())
+                .expireAfterAccess(rateLimitProperties.getIdleTimeout())
+                .build();
+    }
+
+    // 다시 시도할 수 있을 때까지 남은 시간 ( nanos, 허용되면 0 )
+    public Mono<Long> acquire(final String key, final RateLimitProperties.Limit limit) {
+        if (rateLimitProperties.getMode() == RateLimitProperties.Mode.REDIS) {
+            return acquireGlobal(key, limit);
+        }
+        return Mono.just(acquireLocal(key, limit, System.nanoTime()));
+    }
+
+    long acquireLocal(final String key, final RateLimitProperties.Limit limit, final long nowNanos) {
+        var interval = limit.intervalNanos();
+        var tolerance = interval * limit.getBurst();
+        var tat = buckets.get(key, ignored -> new AtomicLong(nowNanos));
+        while (true) {
+            var current = tat.get();
+            var next = Math.max(current, nowNanos) + interval;
+            var wait = next - nowNanos - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0L;
+            }
+        }
+    }
+
+    private Mono<Long> acquireGlobal(final String key, final RateLimitProperties.Limit limit) {
+        var interval = TimeUnit.NANOSECONDS.toMicros(limit.intervalNanos());
+        return reactiveRedisTemplate.execute(userQueueScripts.getRateLimit(),
+                        List.of(USER_QUEUE_RATE_LIMIT_KEY.formatted(key)),
+                        List.of(String.valueOf(interval), String.valueOf(interval * limit.getBurst())))
+                .next()
+                .map(TimeUnit.MICROSECONDS::toNanos)
+                .doOnError(ex -> log.warn("rate limit check failed, allowing request", ex))
+                .onErrorReturn(0L);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.flow.service;
+
+import com.example.flow.config.RankProperties;
+import com.example.flow.config.ShardingProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// 샤드 대기열 ( 한 대기열에 사용자가 몰릴 때 키 하나 / 클러스터 슬롯 하나에 부하가 몰리지 않도록 )
+// - 대기열을 N 개의 키로 나누고 해시태그로 샤드마다 다른 슬롯에 배치 ( users:queue:{concert:3}:wait )
+// - 사용자의 샤드는 userId 로 정해지고 대기 / 마지막 접속 / 허용 키가 모두 같은 샤드에 있어서 스크립트가 슬롯을 넘지 않는다
+// - score 는 대기열 공용 순번 ( INCR ) 이라 샤드를 합쳐도 등록 순서가 유지된다
+// - 전체 순번 = 내 샤드 순번 + 다른 샤드에서 내 score 보다 앞선 인원 ( ZCOUNT )
+//   대략적인 순번 ( queue.rank.mode: approximate ) 이면 내 score - 마지막으로 허용된 score - 1 ( 샤드 수와 상관없이 GET 한번 )
+// - 진입 허용은 샤드별 앞쪽을 모아서 count 번째 score 를 구하고 샤드마다 그 score 까지만 이동 ( merge )
+//   펜싱 토큰은 샤드마다 자기 슬롯의 키와 비교하고 head-seq 는 더 클 때만 올린다
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class ShardedWaitQueueService {
+
+    private final String USER_QUEUE_SHARD_WAIT_KEY = "users:queue:{%s:%d}:wait";
+
+    private final String USER_QUEUE_SHARD_SEEN_KEY = "users:queue:{%s:%d}:seen";
+
+    private final String USER_QUEUE_SHARD_PROCEED_KEY = "users:queue:{%s:%d}:proceed";
+
+    // 샤드가 마지막으로 받은 펜싱 토큰 ( 샤드 슬롯 안에서 오래된 리스 소유자의 이동을 거절 )
+    private final String USER_QUEUE_SHARD_FENCE_KEY = "users:queue:{%s:%d}:fence";
+
+    // 대기열 공용 순번 ( score )
+    private final String USER_QUEUE_SEQ_KEY = "users:queue:{%s}:seq";
+
+    // 마지막으로 허용된 대기자의 score ( 대략적인 순번 기준값 )
+    private final String USER_QUEUE_HEAD_SEQ_KEY = "users:queue:{%s}:head-seq";
+
+    // 지금까지 허용된 누적 인원 ( 순번 near-cache 기준값 )
+    private final String USER_QUEUE_HEAD_KEY = "users:queue:%s:head";
+
+    private final String USER_QUEUE_REGISTRY_KEY = "users:queue:registry";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final UserQueueScripts userQueueScripts;
+
+    private final ShardingProperties shardingProperties;
+
+    private final RankProperties rankProperties;
+
+    private final AdmissionStreamService admissionStreamService;
+
+    private final MemberCodec memberCodec;
+
+    public boolean isSharded(final String queue) {
+        return shardingProperties.shardsOf(queue) > 1;
+    }
+
+    public int shardOf(final String queue,final Long userId) {
+        return Math.floorMod(Long.hashCode(userId), shardingProperties.shardsOf(queue));
+    }
+
+    public String proceedKey(final String queue,final Long userId) {
+        return USER_QUEUE_SHARD_PROCEED_KEY.formatted(queue, shardOf(queue, userId));
+    }
+
+    // 샤드 대기열은 등록할 때마다 활성 대기열 목록 ( 단일 키 ) 을 건드리지 않도록 시작시 한번 넣어두고 빼지 않는다
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerShardedQueues() {
+        var queues = shardingProperties.getQueues().keySet().stream().filter(this::isSharded).toArray(String[]::new);
+        if (queues.length == 0) {
+            return ;
+        }
+        reactiveRedisTemplate.opsForSet().add(USER_QUEUE_REGISTRY_KEY, queues)
+                .doOnError(ex -> log.warn("failed to register sharded queues", ex))
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    // 등록 ( 등록여부, 전체 순번(0부터 시작) )
+    // 이미 등록된 사용자는 순번을 새로 받지 않는다 ( 대기실 새로고침마다 score 가 비면 대략적인 순번이 커진다 )
+    public Mono<Tuple2<Boolean, Long>> register(final String queue,final Long userId) {
+        var shard = shardOf(queue, userId);
+        return shardRank(queue, shard, userId, true)
+                .flatMap(registered -> registered.get(0) >= 0
+                        ? globalRank(queue, shard, registered.get(0), registered.get(1)).map(rank -> Tuples.of(false, rank))
+                        : reactiveRedisTemplate.opsForValue().increment(USER_QUEUE_SEQ_KEY.formatted(queue))
+                                .flatMap(seq -> reactiveRedisTemplate.execute(userQueueScripts.getRegisterWaitShard(),
+                                                List.of(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, shard), USER_QUEUE_SHARD_SEEN_KEY.formatted(queue, shard)),
+                                                List.of(seq.toString(), memberCodec.encode(userId), String.valueOf(Instant.now().getEpochSecond()), memberCodec.legacy(userId)))
+                                        .next())
+                                .flatMap(result -> globalRank(queue, shard, result.get(1), result.get(2))
+                                        .map(rank -> Tuples.of(result.get(0) == 1L, rank))));
+    }
+
+    // 순번 조회 ( 전체 순번(0부터 시작, 없으면 -1), 지금까지 허용된 인원 )
+    // heartbeat 가 true 면 마지막 접속 시각도 갱신
+    public Mono<Tuple2<Long, Long>> rank(final String queue,final Long userId,final boolean heartbeat) {
+        var shard = shardOf(queue, userId);
+        var rank = shardRank(queue, shard, userId, heartbeat)
+                .flatMap(result -> result.get(0) < 0
+                        ? Mono.just(-1L)
+                        : globalRank(queue, shard, result.get(0), result.get(1)));
+        return Mono.zip(rank, head(queue));
+    }
+
+    // 진입 허용 ( 실제 허용된 인원수 ( 리스를 잃은 노드면 -1 ), 지금까지 허용된 인원 )
+    // 리스 펜싱 토큰 키는 샤드 키와 다른 슬롯이라 먼저 GET 으로 확인하고 ( 이미 리스를 잃었으면 샤드를 건드리지 않음 )
+    // GET 과 이동 사이에 리스를 잃는 경우는 샤드 스크립트가 샤드에 남은 더 새 토큰과 비교해서 거절한다
+    public Mono<Tuple2<Long, Long>> allow(final String queue,final Long count,final Long fence,final String fenceKey) {
+        var validFence = fence == null
+                ? Mono.just(true)
+                : reactiveRedisTemplate.opsForValue().get(fenceKey).map(fence.toString()::equals).defaultIfEmpty(false);
+        return validFence.flatMap(valid -> valid ? popHead(queue, count, fence) : Mono.just(Tuples.of(-1L, 0L)));
+    }
+
+    // 허용열 인원 ( 전체 샤드 합계 )
+    public Mono<Long> activeSessions(final String queue) {
+        return Flux.range(0, shardingProperties.shardsOf(queue))
+                .flatMap(shard -> reactiveRedisTemplate.opsForZSet().size(USER_QUEUE_SHARD_PROCEED_KEY.formatted(queue, shard)))
+                .reduce(0L, Long::sum);
+    }
+
+    // 떠난 대기자 / 만료된 허용자 정리 ( 제거된 대기자 수, 제거된 허용자 수, 남은 대기 인원, 남은 허용 인원, 0 )
+    // 샤드 대기열은 목록에서 빼지 않는다
+    public Mono<List<Long>> sweep(final String queue,final List<String> args) {
+        return Flux.range(0, shardingProperties.shardsOf(queue))
+                .flatMap(shard -> reactiveRedisTemplate.execute(userQueueScripts.getSweepQueue(),
+                                List.of(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, shard), USER_QUEUE_SHARD_SEEN_KEY.formatted(queue, shard), USER_QUEUE_SHARD_PROCEED_KEY.formatted(queue, shard)),
+                                args)
+                        .next())
+                .reduce(new long[4], (sum, result) -> {
+                    for (int i = 0; i < sum.length; i++) {
+                        sum[i] += result.get(i);
+                    }
+                    return sum;
+                })
+                .map(sum -> List.of(sum[0], sum[1], sum[2], sum[3], 0L));
+    }
+
+    // 샤드 내 순번 조회 ( { 샤드 내 순번 ( 없으면 -1 ), score } )
+    private Mono<List<Long>> shardRank(final String queue,final int shard,final Long userId,final boolean heartbeat) {
+        return reactiveRedisTemplate.execute(userQueueScripts.getGetRankShard(),
+                        List.of(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, shard), USER_QUEUE_SHARD_SEEN_KEY.formatted(queue, shard)),
+                        List.of(memberCodec.encode(userId), heartbeat ? String.valueOf(Instant.now().getEpochSecond()) : "", memberCodec.legacy(userId)))
+                .next();
+    }
+
+    // 샤드 내 순번 + 다른 샤드에서 score 가 더 작은 인원 ( 대략적인 순번이면 score - 마지막으로 허용된 score - 1 )
+    private Mono<Long> globalRank(final String queue,final int shard,final Long shardRank,final Long score) {
+        if (rankProperties.isApproximate()) {
+            return reactiveRedisTemplate.opsForValue().get(USER_QUEUE_HEAD_SEQ_KEY.formatted(queue))
+                    .map(Long::valueOf)
+                    .defaultIfEmpty(0L)
+                    .map(headSeq -> Math.max(score - headSeq - 1, 0L));
+        }
+        var ahead = Range.rightOpen(Double.NEGATIVE_INFINITY, score.doubleValue());
+        return Flux.range(0, shardingProperties.shardsOf(queue))
+                .filter(other -> other != shard)
+                .flatMap(other -> reactiveRedisTemplate.opsForZSet().count(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, other), ahead))
+                .reduce(shardRank, Long::sum);
+    }
+
+    private Mono<Long> head(final String queue) {
+        return reactiveRedisTemplate.opsForValue().get(USER_QUEUE_HEAD_KEY.formatted(queue))
+                .map(Long::valueOf)
+                .defaultIfEmpty(0L);
+    }
+
+    // 샤드마다 앞에서 count 명씩 모아 전체에서 앞선 count 명만 이동
+    // 샤드 하나라도 펜싱 토큰으로 거절되면 이미 이동된 인원만 반영하고, 아무도 이동하지 않았으면 -1
+    private Mono<Tuple2<Long, Long>> popHead(final String queue,final Long count,final Long fence) {
+        var admittedAt = AdmissionEvent.admittedAtScore(System.currentTimeMillis());
+        return Flux.range(0, shardingProperties.shardsOf(queue))
+                .flatMap(shard -> reactiveRedisTemplate.opsForZSet().rangeWithScores(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, shard), Range.closed(0L, count - 1))
+                        .map(member -> Tuples.of(shard, member.getScore().longValue())))
+                .collectSortedList(Comparator.comparing(Tuple2::getT2))
+                .flatMap(heads -> {
+                    if (heads.isEmpty()) {
+                        return Mono.just(Tuples.of(0L, 0L));
+                    }
+                    var admitted = heads.subList(0, (int) Math.min(count, heads.size()));
+                    var cutoff = String.valueOf(admitted.get(admitted.size() - 1).getT2());
+                    var quotas = admitted.stream().collect(Collectors.groupingBy(Tuple2::getT1, Collectors.counting()));
+
+                    return Flux.fromIterable(quotas.entrySet())
+                            .flatMap(quota -> reactiveRedisTemplate.execute(userQueueScripts.getPopWaitShard(),
+                                            List.of(USER_QUEUE_SHARD_WAIT_KEY.formatted(queue, quota.getKey()),
+                                                    USER_QUEUE_SHARD_PROCEED_KEY.formatted(queue, quota.getKey()),
+                                                    USER_QUEUE_SHARD_SEEN_KEY.formatted(queue, quota.getKey()),
+                                                    admissionStreamService.shardStreamKey(queue, quota.getKey()),
+                                                    USER_QUEUE_SHARD_FENCE_KEY.formatted(queue, quota.getKey())),
+                                            List.of(cutoff, quota.getValue().toString(), admittedAt, queue, admissionStreamService.maxLength(), fence == null ? "" : fence.toString(), admissionStreamService.ttlSeconds()))
+                                    .next())
+                            .collectList()
+                            .flatMap(results -> {
+                                var allowed = results.stream().mapToLong(Long::longValue).filter(popped -> popped > 0).sum();
+                                if (allowed == 0) {
+                                    return Mono.just(Tuples.of(results.contains(-1L) ? -1L : 0L, 0L));
+                                }
+                                // head-seq 는 더 클 때만 올린다 ( 늦게 끝난 이동이 기준값을 뒤로 돌리지 않도록 )
+                                return reactiveRedisTemplate.execute(userQueueScripts.getSetMax(), List.of(USER_QUEUE_HEAD_SEQ_KEY.formatted(queue)), List.of(cutoff))
+                                        .then(reactiveRedisTemplate.opsForValue().increment(USER_QUEUE_HEAD_KEY.formatted(queue), allowed))
+                                        .map(head -> Tuples.of(allowed, head));
+                            });
+                });
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.flow.service;
+
+import com.example.flow.config.SingleFlightProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// 같은 키로 동시에 들어온 조회를 하나로 합친다 ( 노드 단위 )
+// - 진행 중인 조회가 있으면 새로 보내지 않고 그 결과를 같이 받는다 ( collapsed )
+// - 완료된 결과는 ttl 동안 그대로 돌려준다 ( hit )
+// - 에러는 다시 쓰지 않고 바로 지운다
+// - 대기열이 움직이면 ( 진입 허용 / 정리 ) 그 대기열의 결과는 버린다
+// - 조회가 모두 끝난 대기열은 주기적으로 지운다 ( 대기열 이름은 client 가 정하므로 )
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class SingleFlight {
+
+    private final SingleFlightProperties singleFlightProperties;
+
+    private final UserQueueMetrics userQueueMetrics;
+
+    private final UserQueueEventService userQueueEventService;
+
+    // queue -> op:key -> 조회
+    private final Map<String, Map<String, Flight>> flights = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (!singleFlightProperties.isEnabled()) {
+            return ;
+        }
+        // 다른 노드의 진입 허용 / 정리
+        userQueueEventService.movedAll()
+                .doOnNext(event -> invalidate(event.queue()))
+                .doOnError(ex -> log.warn("single-flight subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .subscribe();
+    }
+
+    // supplier 는 조립만 하고 실제 조회는 구독할 때 시작되어야 한다 ( 키 lock 안에서 호출됨 )
+    public <T> Mono<T> execute(final String op, final String queue, final String key, final Supplier<Mono<T>> supplier) {
+        if (!singleFlightProperties.isEnabled()) {
+            return supplier.get();
+        }
+        return Mono.defer(() -> {
+            var queueFlights = flights.computeIfAbsent(queue, ignored -> new ConcurrentHashMap<>());
+            var flightKey = op + ":" + key;
+            var created = new Flight[1];
+            var flight = queueFlights.compute(flightKey, (ignored, existing) -> {
+                if (existing != null && existing.isReusable()) {
+                    return existing;
+                }
+                created[0] = new Flight();
+                created[0].result = supplier.get()
+                        .doOnSuccess(value -> complete(queueFlights, flightKey, created[0]))
+                        .doOnError(ex -> queueFlights.remove(flightKey, created[0]))
+                        .cache();
+                return created[0];
+            });
+            userQueueMetrics.singleFlight(op, flight == created[0] ? "miss" : flight.done ? "hit" : "collapsed");
+            return flight.<T>result();
+        });
+    }
+
+    // 대기열의 진행 중 / 보관 중인 조회를 버린다 ( 이미 합류한 조회는 그대로 결과를 받는다 )
+    public void invalidate(final String queue) {
+        flights.remove(queue);
+    }
+
+    // 진행 / 보관 중인 조회가 없는 대기열을 지운다 ( 지운 직후 그 map 에 들어간 조회는 합쳐지지 않을 뿐 결과는 그대로 받는다 )
+    @Scheduled(fixedDelay = 60_000L, initialDelay = 60_000L)
+    public void evictIdle() {
+        flights.keySet().forEach(queue -> flights.computeIfPresent(queue, (key, queueFlights) -> queueFlights.isEmpty() ? null : queueFlights));
+    }
+
+    // 조회 기록이 남은 대기열 수
+    int queues() {
+        return flights.size();
+    }
+
+    // 전체 초기화
+    public void clear() {
+        flights.clear();
+    }
+
+    // 진행 / 보관 중인 조회 수
+    public int size() {
+        return flights.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private void complete(final Map<String, Flight> queueFlights, final String flightKey, final Flight flight) {
+        var ttl = singleFlightProperties.getTtl();
+        if (ttl.isZero()) {
+            queueFlights.remove(flightKey, flight);
+            return ;
+        }
+        flight.doneAt = System.nanoTime();
+        flight.done = true;
+        Schedulers.parallel().schedule(() -> queueFlights.remove(flightKey, flight), ttl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private final class Flight {
+
+        // 처음 구독될 때 한번만 조회하고 결과를 공유
+        private Mono<?> result;
+
+        private volatile boolean done;
+
+        // 완료 시각 ( nanoTime )
+        private volatile long doneAt;
+
+        private boolean isReusable() {
+            return !done || System.nanoTime() - doneAt < singleFlightProperties.getTtl().toNanos();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> Mono<T> result() {
+            return (Mono<T>) result;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.flow.service;
+
+import com.example.flow.config.WarmupProperties;
+import com.example.flow.service.store.QueueStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+// 시작 예열 ( 트래픽이 몰릴 때 늘어난 노드가 첫 요청부터 느리지 않도록 )
+// - redis 연결을 미리 열고 스크립트를 올린 뒤, 순번 / 허용 여부 조회를 반복해서 JIT 가 조회 경로를 컴파일하게 한다
+// - readiness 는 ApplicationReadyEvent 리스너가 모두 끝난 뒤에 ACCEPTING_TRAFFIC 이 되므로 마지막 리스너에서 끝날 때까지 기다린다
+// - 예열이 실패하거나 timeout 을 넘어도 트래픽은 받는다 ( redis 장애 중에 노드가 뜨지 못하는 일이 없도록 )
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class StartupWarmup {
+
+    // 예열 조회용 대기열 ( 아무도 등록하지 않는다 )
+    private static final String WARMUP_QUEUE = "__warmup";
+
+    private final WarmupProperties warmupProperties;
+
+    private final QueueStore queueStore;
+
+    private final UserQueueScripts userQueueScripts;
+
+    private final UserQueueService userQueueService;
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup(final ApplicationReadyEvent event) {
+        var redis = queueStore.isLocal()
+                ? Mono.<Void>empty()
+                : reactiveRedisTemplate.execute(connection -> connection.ping()).then(userQueueScripts.preload());
+        if (!warmupProperties.isEnabled()) {
+            redis.onErrorComplete().subscribe();
+            return ;
+        }
+
+        var startedAt = System.nanoTime();
+        try {
+            redis.then(lookups()).block(warmupProperties.getTimeout());
+            log.info("warmed up in %d ms".formatted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+        } catch (RuntimeException ex) {
+            log.warn("warm-up did not finish, accepting traffic anyway", ex);
+        }
+
+        if (warmupProperties.isExit()) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    // 대기열에 없는 사용자 ( 음수 userId ) 로 순번 / 허용 여부 조회 ( near-cache, single-flight, 묶음 조회, 스크립트 경로 )
+    private Mono<Void> lookups() {
+        return Flux.range(1, warmupProperties.getIterations())
+                .flatMap(i -> userQueueService.getRank(WARMUP_QUEUE, (long) -i)
+                        .then(userQueueService.isAllowed(WARMUP_QUEUE, (long) -i)), 64)
+                .then();
+    }
+}
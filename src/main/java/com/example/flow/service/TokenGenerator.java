@@ -0,0 +1,152 @@
+package com.example.flow.service;
+
+import com.example.flow.config.TokenProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+
+// 입장 토큰 생성기 ( HMAC-SHA256 )
+// - 토큰 : {userId}.{admittedAt}.{expiresAt}.{hmac}
+// - 서명에 queue 까지 포함되어서 다른 대기열 / 다른 사용자 토큰으로는 검증되지 않는다
+//   queue 는 길이를 앞에 붙여서 ( queue 에 구분자가 들어가도 ) 다른 (queue,userId) 와 같은 서명 입력이 되지 않는다, 음수 userId 는 거절
+// - 검증은 redis 조회 없이 로컬에서 끝난다
+// - Mac 은 thread-safe 하지 않아서 스레드마다 하나씩 재사용한다
+// - hex 변환은 String.format 대신 테이블로 처리
+// - (queue,userId) 별로 마지막에 검증된 토큰을 캐시해서 같은 토큰은 서명을 다시 계산하지 않는다
+@Log4j2
+@Component
+public class TokenGenerator {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte[] PREFIX = "user-queue-".getBytes(StandardCharsets.UTF_8);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ThreadLocal<Mac> macs;
+
+    // 토큰 유효 시간
+    @Getter
+    private final Duration ttl;
+
+    // 캐시를 쓰지 않으면 null
+    private final Cache<TokenKey, String> verified;
+
+    public TokenGenerator(TokenProperties tokenProperties) {
+        var secretKey = new SecretKeySpec(secret(tokenProperties), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                var mac = Mac.getInstance(ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.ttl = tokenProperties.getTtl();
+        this.verified = tokenProperties.getCacheSize() > 0
+                ? Caffeine.newBuilder().maximumSize(tokenProperties.getCacheSize()).build()
+                : null;
+    }
+
+    // 입장 토큰 발급 ( admittedAt == 진입 허용된 시각 epoch millis, 이전 버전 토큰은 epoch seconds )
+    public String mint(final String queue, final long userId, final long admittedAt) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("userId must not be negative : " + userId);
+        }
+        var expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        return userId + "." + admittedAt + "." + expiresAt + "." + sign(queue, userId, admittedAt, expiresAt);
+    }
+
+    // 입장 토큰 검증 ( 서명이 틀리거나 만료되었으면 null )
+    public AdmissionToken verify(final String queue, final long userId, final String token) {
+        var parsed = AdmissionToken.parse(token);
+        if (parsed == null || userId < 0 || parsed.userId() != userId || parsed.expiresAt() < Instant.now().getEpochSecond()) {
+            return null;
+        }
+
+        var key = new TokenKey(queue, userId);
+        if (verified != null && token.equals(verified.getIfPresent(key))) {
+            return parsed;
+        }
+
+        // 상수 시간 비교
+        var expected = sign(queue, userId, parsed.admittedAt(), parsed.expiresAt()).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, parsed.signature().getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        if (verified != null) {
+            verified.put(key, token);
+        }
+        return parsed;
+    }
+
+    // HMAC("user-queue-{queue byte 길이}:{queue}:{userId}:{admittedAt}:{expiresAt}")
+    private String sign(final String queue, final long userId, final long admittedAt, final long expiresAt) {
+        var mac = macs.get();
+        var queueBytes = queue.getBytes(StandardCharsets.UTF_8);
+        mac.update(PREFIX);
+        mac.update((queueBytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+        mac.update(queueBytes);
+        mac.update((":" + userId + ":" + admittedAt + ":" + expiresAt).getBytes(StandardCharsets.US_ASCII));
+        return toHex(mac.doFinal()); // doFinal 이 Mac 을 초기 상태로 되돌려서 그대로 재사용 가능
+    }
+
+    static String toHex(final byte[] bytes) {
+        var chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] secret(final TokenProperties tokenProperties) {
+        if (tokenProperties.getSecret() != null && !tokenProperties.getSecret().isBlank()) {
+            return tokenProperties.getSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        var random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        log.warn("queue.token.secret is not set, using a random secret ( tokens are not shared between nodes )");
+        return random;
+    }
+
+    private record TokenKey(String queue, long userId) {
+    }
+
+    public record AdmissionToken(long userId, long admittedAt, long expiresAt, String signature) {
+
+        // 형식이 맞지 않으면 null ( 예외를 만들지 않는다 )
+        static AdmissionToken parse(final String token) {
+            if (token == null) {
+                return null;
+            }
+            var first = token.indexOf('.');
+            var second = token.indexOf('.', first + 1);
+            var third = token.indexOf('.', second + 1);
+            if (first <= 0 || second <= first + 1 || third <= second + 1 || third == token.length() - 1) {
+                return null;
+            }
+            try {
+                return new AdmissionToken(
+                        Long.parseLong(token, 0, first, 10),
+                        Long.parseLong(token, first + 1, second, 10),
+                        Long.parseLong(token, second + 1, third, 10),
+                        token.substring(third + 1).toLowerCase());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
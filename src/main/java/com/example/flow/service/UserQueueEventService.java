@@ -0,0 +1,101 @@
+package com.example.flow.service;
+
+import com.example.flow.service.store.QueueStore;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+@Log4j2
+@Service
+public class UserQueueEventService {
+
+    // 대기열 이동 이벤트 채널
+    private final String USER_QUEUE_MOVED_CHANNEL = "users:queue:moved";
+
+    // 진입 허용 정책 신호 채널
+    private final String USER_QUEUE_FEEDBACK_CHANNEL = "users:queue:feedback";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer;
+
+    // 로컬 저장소면 redis pub/sub 대신 노드 안에서만 전달
+    private final Sinks.Many<QueueMovedEvent> localMoved;
+
+    private final Sinks.Many<AdmissionFeedbackEvent> localFeedback;
+
+    // 모든 구독자가 하나의 redis 구독을 공유한다
+    private final Flux<QueueMovedEvent> movedEvents;
+
+    public UserQueueEventService(ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                                 ObjectProvider<ReactiveRedisMessageListenerContainer> listenerContainer,
+                                 QueueStore queueStore) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        if (queueStore.isLocal()) {
+            this.localMoved = Sinks.many().multicast().directBestEffort();
+            this.localFeedback = Sinks.many().multicast().directBestEffort();
+            this.movedEvents = localMoved.asFlux();
+            return ;
+        }
+        this.localMoved = null;
+        this.localFeedback = null;
+        this.movedEvents = Flux.defer(() -> listenerContainer.getObject().receive(ChannelTopic.of(USER_QUEUE_MOVED_CHANNEL)))
+                .map(message -> QueueMovedEvent.decode(message.getMessage()))
+                .doOnError(ex -> log.warn("queue moved subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .share();
+    }
+
+    // 진입 허용으로 대기열이 움직였음을 모든 노드에 알림
+    public Mono<Long> publishMoved(final String queue,final Long allowed,final Long head) {
+        if (localMoved != null) {
+            return emitLocal(localMoved, new QueueMovedEvent(queue, allowed, head));
+        }
+        return reactiveRedisTemplate.convertAndSend(USER_QUEUE_MOVED_CHANNEL, new QueueMovedEvent(queue, allowed, head).encode());
+    }
+
+    // 전체 대기열의 이동 이벤트 구독
+    public Flux<QueueMovedEvent> movedAll() {
+        return movedEvents;
+    }
+
+    // 특정 대기열의 이동 이벤트 구독
+    public Flux<QueueMovedEvent> moved(final String queue) {
+        return movedEvents.filter(event -> event.queue().equals(queue));
+    }
+
+    // 보호 중인 서비스의 응답 지연 / 에러 신호를 모든 노드에 전달 ( 리스를 가진 노드의 정책이 반영 )
+    public Mono<Long> publishFeedback(final AdmissionFeedbackEvent event) {
+        if (localFeedback != null) {
+            return emitLocal(localFeedback, event);
+        }
+        return reactiveRedisTemplate.convertAndSend(USER_QUEUE_FEEDBACK_CHANNEL, event.encode());
+    }
+
+    // 신호 구독
+    public Flux<AdmissionFeedbackEvent> feedback() {
+        if (localFeedback != null) {
+            return localFeedback.asFlux();
+        }
+        return Flux.defer(() -> listenerContainer.getObject().receive(ChannelTopic.of(USER_QUEUE_FEEDBACK_CHANNEL)))
+                .map(message -> AdmissionFeedbackEvent.decode(message.getMessage()));
+    }
+
+    // 여러 스레드에서 동시에 보내도 유실되지 않도록 잠깐 재시도, 받은 구독자 수를 돌려준다
+    private <T> Mono<Long> emitLocal(final Sinks.Many<T> sink, final T event) {
+        return Mono.fromSupplier(() -> {
+            sink.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            return (long) sink.currentSubscriberCount();
+        });
+    }
+}
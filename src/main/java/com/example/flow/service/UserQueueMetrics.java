@@ -0,0 +1,115 @@
+package com.example.flow.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 대기열 지표 ( /actuator/metrics )
+// - queue.depth            : 대기 인원 ( 정리 주기마다 리스를 가진 노드가 갱신 )
+// - queue.admitted         : 진입 허용된 인원
+//   ( queue.depth, queue.admitted 는 대기열별 태그라 대기열이 목록에서 빠지면 제거, 다시 쓰이면 새로 등록 )
+// - queue.register         : 대기열 등록 지연
+// - queue.redis.command    : redis 호출 지연 ( op 별 )
+// - queue.scheduler.tick   : 진입 허용 스케쥴링 한번에 걸린 시간
+// - queue.batch.size       : 묶어서 보낸 조회 수 ( op 별 )
+// - queue.rate-limit.rejected : 요청 제한으로 거절된 요청 수 ( endpoint, client : user | ip )
+// - queue.single-flight    : 합쳐진 조회 수 ( op 별, result : miss | collapsed | hit, collapsed + hit 이 아낀 조회 )
+@Component
+@RequiredArgsConstructor
+public class UserQueueMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> depths = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> admitted = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> commands = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> singleFlights = new ConcurrentHashMap<>();
+
+    private final Map<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> rateLimited = new ConcurrentHashMap<>();
+
+    public void depth(final String queue, final long depth) {
+        depths.computeIfAbsent(queue, key -> {
+            var value = new AtomicLong();
+            Gauge.builder("queue.depth", value, AtomicLong::get).tag("queue", key).register(meterRegistry);
+            return value;
+        }).set(depth);
+    }
+
+    public void admitted(final String queue, final long count) {
+        admitted.computeIfAbsent(queue, key -> Counter.builder("queue.admitted").tag("queue", key).register(meterRegistry))
+                .increment(count);
+    }
+
+    // 목록에서 빠진 대기열의 지표 제거 ( 한번 쓰고 버리는 대기열이 meter 로 계속 쌓이지 않도록 )
+    public void remove(final String queue) {
+        depths.remove(queue);
+        admitted.remove(queue);
+        meterRegistry.find("queue.depth").tag("queue", queue).meters().forEach(meterRegistry::remove);
+        meterRegistry.find("queue.admitted").tag("queue", queue).meters().forEach(meterRegistry::remove);
+    }
+
+    public void singleFlight(final String op, final String result) {
+        singleFlights.computeIfAbsent(op + ":" + result, key -> Counter.builder("queue.single-flight").tag("op", op).tag("result", result).register(meterRegistry))
+                .increment();
+    }
+
+    public void rateLimited(final String endpoint, final String client) {
+        rateLimited.computeIfAbsent(endpoint + ":" + client, key -> Counter.builder("queue.rate-limit.rejected").tag("endpoint", endpoint).tag("client", client).register(meterRegistry))
+                .increment();
+    }
+
+    public void batchSize(final String op, final int size) {
+        batchSizes.computeIfAbsent(op, key -> DistributionSummary.builder("queue.batch.size").tag("op", key).register(meterRegistry))
+                .record(size);
+    }
+
+    // 구독부터 완료까지의 시간을 기록
+    public <T> Mono<T> timed(final Timer timer, final Mono<T> mono) {
+        return Mono.defer(() -> {
+            var sample = Timer.start(meterRegistry);
+            return mono.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <T> Flux<T> timed(final Timer timer, final Flux<T> flux) {
+        return Flux.defer(() -> {
+            var sample = Timer.start(meterRegistry);
+            return flux.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public <T> Mono<T> command(final String op, final Mono<T> mono) {
+        return timed(commandTimer(op), mono);
+    }
+
+    public <T> Flux<T> command(final String op, final Flux<T> flux) {
+        return timed(commandTimer(op), flux);
+    }
+
+    public Timer registerTimer() {
+        return meterRegistry.timer("queue.register");
+    }
+
+    public Timer tickTimer() {
+        return meterRegistry.timer("queue.scheduler.tick");
+    }
+
+    private Timer commandTimer(final String op) {
+        return commands.computeIfAbsent(op, key -> Timer.builder("queue.redis.command").tag("op", key).register(meterRegistry));
+    }
+}
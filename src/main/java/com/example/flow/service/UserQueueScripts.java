@@ -0,0 +1,86 @@
+package com.example.flow.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@Log4j2
+@Getter
+@Component
+@RequiredArgsConstructor
+public class UserQueueScripts {
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    // 대기열 등록 + 순번 조회
+    private final RedisScript<List<Long>> registerWaitQueue = longs("scripts/register-wait-queue.lua");
+
+    // 대기열 대량 등록 + 순번 조회
+    private final RedisScript<List<Long>> registerWaitQueueBulk = longs("scripts/register-wait-queue-bulk.lua");
+
+    // wait -> proceed 이동
+    private final RedisScript<List<Long>> allowUser = longs("scripts/allow-user.lua");
+
+    // 순번 조회 + 마지막 접속 시각 갱신
+    private final RedisScript<List<Long>> getRank = longs("scripts/get-rank.lua");
+
+    // 순번 묶음 조회 + 마지막 접속 시각 갱신
+    private final RedisScript<List<Long>> getRankBatch = longs("scripts/get-rank-batch.lua");
+
+    // 순번 대량 조회
+    private final RedisScript<List<Long>> getRankBulk = longs("scripts/get-rank-bulk.lua");
+
+    // 떠난 대기자 / 만료된 허용자 정리
+    private final RedisScript<List<Long>> sweepQueue = longs("scripts/sweep-queue.lua");
+
+    // 샤드 대기열 등록
+    private final RedisScript<List<Long>> registerWaitShard = longs("scripts/register-wait-shard.lua");
+
+    // 샤드 순번 조회
+    private final RedisScript<List<Long>> getRankShard = longs("scripts/get-rank-shard.lua");
+
+    // 샤드 wait -> proceed 이동
+    private final RedisScript<Long> popWaitShard = RedisScript.of(new ClassPathResource("scripts/pop-wait-shard.lua"), Long.class);
+
+    // 더 클 때만 SET ( 샤드 head-seq )
+    private final RedisScript<Long> setMax = RedisScript.of(new ClassPathResource("scripts/set-max.lua"), Long.class);
+
+    // 요청 제한 ( redis 모드 )
+    private final RedisScript<Long> rateLimit = RedisScript.of(new ClassPathResource("scripts/rate-limit.lua"), Long.class);
+
+    // 스케쥴러 노드 생존 신호
+    private final RedisScript<Long> nodeHeartbeat = RedisScript.of(new ClassPathResource("scripts/node-heartbeat.lua"), Long.class);
+
+    // 샤드 리스 획득 / 갱신
+    private final RedisScript<Long> acquireLease = RedisScript.of(new ClassPathResource("scripts/acquire-lease.lua"), Long.class);
+
+    // 샤드 리스 반납
+    private final RedisScript<Long> releaseLease = RedisScript.of(new ClassPathResource("scripts/release-lease.lua"), Long.class);
+
+    // 정수 배열을 돌려주는 스크립트 ( 결과 타입으로 List.class 만 넘길 수 있어서 여기서 한번만 변환 )
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Long>> longs(final String path) {
+        return (RedisScript<List<Long>>) (RedisScript<?>) RedisScript.of(new ClassPathResource(path), List.class);
+    }
+
+    // 서버 시작시 스크립트를 미리 올려두어 첫 요청부터 EVALSHA 로 처리되도록 한다 ( redis 저장소를 쓸 때만, StartupWarmup )
+    public Mono<Void> preload() {
+        return Flux.fromIterable(List.<RedisScript<?>>of(registerWaitQueue, registerWaitQueueBulk, allowUser, getRank, getRankBatch, getRankBulk, sweepQueue, registerWaitShard, getRankShard, popWaitShard, setMax, rateLimit, nodeHeartbeat, acquireLease, releaseLease))
+                .flatMap(script -> reactiveRedisTemplate.execute(connection -> connection.scriptingCommands()
+                        .scriptLoad(ByteBuffer.wrap(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)))))
+                .doOnNext(sha -> log.info("loaded redis script %s".formatted(sha)))
+                .doOnError(ex -> log.warn("failed to preload redis scripts", ex))
+                .onErrorComplete()
+                .then();
+    }
+}
@@ -1,129 +1,294 @@
 package com.example.flow.service;
 
-import jakarta.validation.Valid;
+import com.example.flow.config.SchedulerProperties;
+import com.example.flow.service.admission.AdmissionPolicies;
+import com.example.flow.service.store.QueueStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
 import reactor.util.function.Tuples;
 
-import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.example.flow.exception.ErrorCode.QUEUE_ALREADY_REGISTERED_USER;
+import static com.example.flow.exception.ErrorCode.QUEUE_NOT_ALLOWED_USER;
 
 @Log4j2
 @Service
 @RequiredArgsConstructor
 public class UserQueueService {
 
-    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+    // 대기열 저장소 ( redis | memory )
+    private final QueueStore queueStore;
 
-    // 대기열 등록
-    private final String USER_QUEUE_WAIT_KEY = "users:queue:%s:wait";
-    
-    // 대기열 인원 스캔 ( 스케쥴링에서 * 짜를거임 )
-    private final String USER_QUEUE_WAIT_KEY_FOR_SCAN = "users:queue:*:wait";
-    
-    // 허용인원 프로세스
-    private final String USER_QUEUE_PROCEED_KEY = "users:queue:%s:proceed";
+    private final UserQueueEventService userQueueEventService;
 
-    @Value("${scheduler.enabled}")
-    private Boolean scheudling = false;
-    
+    private final TokenGenerator tokenGenerator;
+
+    private final AdmissionRevocationService admissionRevocationService;
+
+    private final AdmissionLeaseService admissionLeaseService;
+
+    private final SchedulerProperties schedulerProperties;
+
+    private final AdmissionPolicies admissionPolicies;
+
+    private final QueueThroughputTracker queueThroughputTracker;
+
+    private final UserQueueMetrics userQueueMetrics;
+
+    private final RankNearCache rankNearCache;
+
+    private final SingleFlight singleFlight;
+
+    // 진입 허용 스케쥴링 진행 중 여부
+    private final AtomicBoolean scheduling = new AtomicBoolean(false);
 
     // 대기열 등록 API
     public Mono<Long> registerWaitQueue(final String queue,final Long userId) {
-        // redis sortedset
-        // - key : userId
-        // - value : unix timestamp ( 먼저 접속한사람이 높은 순서)
         // rank ( 몇번째 대기중이야 )
-        var unixTimestamp = Instant.now().getEpochSecond();
-        return reactiveRedisTemplate.opsForZSet().add(USER_QUEUE_WAIT_KEY.formatted(queue), userId.toString(), unixTimestamp)
-                .filter(i -> i)
+        return userQueueMetrics.timed(userQueueMetrics.registerTimer(), queueStore.register(queue, userId))
+                .filter(Tuple2::getT1)
                 .switchIfEmpty(Mono.error(QUEUE_ALREADY_REGISTERED_USER.build()))
-                .flatMap(i -> reactiveRedisTemplate.opsForZSet().rank(USER_QUEUE_WAIT_KEY.formatted(queue), userId.toString()))
-                .map(i -> i >= 0 ? i + 1 : i);
+                .map(registered -> registered.getT2() + 1);
+    }
+
+    // 대기열 등록 또는 순번 조회 ( 대기실 페이지 )
+    // 이미 등록된 사용자도 에러 없이 저장소 조회 한번으로 현재 순번을 돌려주고 마지막 접속 시각을 갱신한다
+    public Mono<Long> registerOrGetRank(final String queue,final Long userId) {
+        return userQueueMetrics.timed(userQueueMetrics.registerTimer(), queueStore.register(queue, userId))
+                .map(registered -> registered.getT2() + 1);
+    }
+
+    // 대기열 대량 등록 ( userId, 순번, 등록여부 )
+    // 이미 등록된 사용자는 에러 대신 등록여부 false 로 현재 순번을 돌려준다
+    public Flux<Tuple3<Long, Long, Boolean>> registerWaitQueueBulk(final String queue,final Flux<Long> userIds) {
+        return queueStore.registerBulk(queue, userIds)
+                .map(registered -> Tuples.of(registered.getT1(), registered.getT2() + 1, registered.getT3()));
     }
 
 
     // 진입 허용
     // count == 몇명의 사람을 허용할꺼냐 ?
     public Mono<Long> allowUser(final String queue,final Long count) {
+        return allowUser(queue, count, null);
+    }
+
+    // fence == 스케쥴러 리스의 펜싱 토큰 ( 리스를 잃은 노드면 -1 을 반환하고 아무도 허용하지 않는다 )
+    public Mono<Long> allowUser(final String queue,final Long count,final Long fence) {
         // 진입을 허용하는 단계
         // 1. wait queue 에 사용자를 제거
         // 2. proceed queue 사용자를 추가
-        var unixTimestamp = Instant.now().getEpochSecond();
-       return reactiveRedisTemplate.opsForZSet().popMin(USER_QUEUE_WAIT_KEY.formatted(queue),count)
-                .flatMap(member -> reactiveRedisTemplate.opsForZSet().add(USER_QUEUE_PROCEED_KEY.formatted(queue), member.getValue() , unixTimestamp))
-               .count();
+       return queueStore.admit(queue, count, fence)
+               .flatMap(result -> {
+                   var allowed = result.getT1();
+                   var head = result.getT2();
+                   if (result.getT3()) {
+                       userQueueMetrics.remove(queue);
+                   }
+                   if (allowed <= 0) {
+                       return Mono.just(allowed);
+                   }
+                   userQueueMetrics.admitted(queue, allowed);
+                   rankNearCache.advance(queue, head);
+                   singleFlight.invalidate(queue);
+                   return userQueueEventService.publishMoved(queue, allowed, head).thenReturn(allowed); // 대기 중인 사용자에게 순번 변경 알림
+               });
     }
 
-    // 진입이 가능한 상태 인지 조회
+    // 진입이 가능한 상태 인지 조회 ( 같은 사용자의 동시 조회는 하나로 합친다 )
     public Mono<Boolean> isAllowed(final String queue,final Long userId) {
-        return reactiveRedisTemplate.opsForZSet().rank(USER_QUEUE_PROCEED_KEY.formatted(queue),userId.toString())
-                .defaultIfEmpty(-1L) // 빈값일 경우 defalut -1L
-                .map(rank -> rank >= 0 ? true : false);
+        return singleFlight.execute("isAllowed", queue, userId.toString(), () -> queueStore.isAdmitted(queue, userId));
     }
 
     // 토큰 조회
-    public Mono<Boolean> isAllowedByToken(final String queue,final Long userId,String token) throws NoSuchAlgorithmException {
-        return this.generateToken(queue,userId)
-                .filter(gen -> gen.equalsIgnoreCase(token))
-                .map(i -> true)
-                .defaultIfEmpty(false);
-
+    // 서명 검증과 회수 여부 모두 로컬에서 확인 ( redis 조회 없음 )
+    public Mono<Boolean> isAllowedByToken(final String queue,final Long userId,String token) {
+        return Mono.fromSupplier(() -> {
+            var admission = tokenGenerator.verify(queue, userId, token);
+            return admission != null && !admissionRevocationService.isRevoked(queue, userId, admission.admittedAt());
+        });
     }
 
 
     // 대기번호 발급
+    // near-cache 에 있으면 저장소 조회 없이 계산하고, 없으면 조회하면서 마지막 접속 시각도 같이 갱신 ( heartbeat )
+    // 같은 사용자의 동시 조회는 저장소 조회 한번으로 합친다
     public Mono<Long> getRank(final String queue,final Long userId) {
-        return reactiveRedisTemplate.opsForZSet().rank(USER_QUEUE_WAIT_KEY.formatted(queue),userId.toString())
-                .defaultIfEmpty(-1L) // 빈값일 경우 defalut -1L
-                .map( rank -> rank >=0 ? rank +1 : rank); // 0번째부터 시작되니깐  +1 해줘야함
+        return Mono.defer(() -> {
+            var cached = rankNearCache.get(queue, userId);
+            return cached != null ? Mono.just(cached) : singleFlight.execute("rank", queue, userId.toString(), () -> getRankFromStore(queue, userId));
+        });
+    }
+
+    private Mono<Long> getRankFromStore(final String queue,final Long userId) {
+        return queueStore.rank(queue, userId)
+                .map(result -> {
+                    var rank = result.getT1();
+                    rank = rank >= 0 ? rank + 1 : rank; // 0번째부터 시작되니깐  +1 해줘야함
+                    rankNearCache.put(queue, userId, rank, result.getT2());
+                    return rank;
+                })
+                .defaultIfEmpty(-1L); // 빈값일 경우 defalut -1L
+    }
+
+    // 대기번호 대량 조회 ( userId, 순번 ) - 마지막 접속 시각은 갱신하지 않음
+    public Flux<Tuple2<Long, Long>> getRankBulk(final String queue,final Flux<Long> userIds) {
+        return queueStore.rankBulk(queue, userIds)
+                .map(ranked -> Tuples.of(ranked.getT1(), ranked.getT2() >= 0 ? ranked.getT2() + 1 : ranked.getT2()));
+    }
+
+    // 대기번호 실시간 발급
+    // 폴링 대신 대기열 선두가 움직일 때만 순번을 다시 조회해서 내려준다
+    // 대기열이 멈춰있어도 떠난 대기자로 정리되지 않도록 주기적으로 다시 조회 ( heartbeat )
+    public Flux<Long> streamRank(final String queue,final Long userId) {
+        var heartbeatInterval = schedulerProperties.getSweep().getWaiterTimeout().dividedBy(3);
+        return Flux.merge(userQueueEventService.moved(queue).map(event -> queue), Flux.interval(heartbeatInterval).map(tick -> queue))
+                .startWith(queue) // 접속 직후 현재 순번
+                .onBackpressureLatest() // 조회 중 쌓인 이벤트는 마지막 것만 반영
+                .concatMap(ignored -> getRank(queue, userId), 1)
+                .distinctUntilChanged()
+                .takeUntil(rank -> rank < 0); // 진입 허용(대기열에서 빠짐)되면 종료
+    }
+
+    // 예상 대기 시간 ( 초 ), 최근 진입 허용 속도로 계산하고 알 수 없으면 null
+    public Long estimateWaitSeconds(final String queue,final Long rank) {
+        return queueThroughputTracker.estimateWaitSeconds(queue, rank);
     }
 
     // 대기열 이탈 토큰생성
-    public Mono<String> generateToken(final String queue,final Long userId) throws NoSuchAlgorithmException {
-        // sha256
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        var input = "user-queue-%s-%d".formatted(queue,userId);
-        byte[] encodedHash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-        StringBuilder hexString = new StringBuilder();
-        for (byte aByte : encodedHash) {
-            hexString.append(String.format("%02x",aByte));
+    // 진입 허용된 사용자에게만 허용 시각이 담긴 서명 토큰을 발급한다
+    public Mono<String> generateToken(final String queue,final Long userId) {
+        if (userId < 0) {
+            return Mono.error(QUEUE_NOT_ALLOWED_USER.build()); // 음수 userId 는 토큰을 발급하지 않는다
         }
+        return queueStore.admittedAt(queue, userId)
+                .switchIfEmpty(Mono.error(QUEUE_NOT_ALLOWED_USER.build()))
+                .map(admittedAt -> tokenGenerator.mint(queue, userId, admittedAt));
+    }
+
+    // 입장 토큰 회수 ( 허용열에서도 제거 )
+    public Mono<Boolean> revokeToken(final String queue,final Long userId) {
+        return queueStore.admittedAt(queue, userId)
+                .defaultIfEmpty(0L)
+                .flatMap(admittedAt -> admissionRevocationService.revoke(queue, userId, admittedAt))
+                .then(queueStore.removeAdmitted(queue, userId))
+                .doOnNext(removed -> singleFlight.invalidate(queue));
+    }
+
+    // 떠난 대기자 / 만료된 허용자 정리 ( 한번에 batch 개씩 )
+    public Mono<Tuple2<Long, Long>> sweepQueue(final String queue) {
+        var now = Instant.now();
+        var sweep = schedulerProperties.getSweep();
+        return queueStore.sweep(queue,
+                        now.minus(sweep.getWaiterTimeout()).getEpochSecond(),
+                        now.minus(sweep.getSessionWindow()).getEpochSecond(),
+                        sweep.getBatchSize())
+                .doOnNext(result -> {
+                    if (result.getT4()) {
+                        userQueueMetrics.remove(queue); // 목록에서 빠진 대기열은 지표도 제거
+                    } else {
+                        userQueueMetrics.depth(queue, result.getT3());
+                    }
+                })
+                .map(result -> Tuples.of(result.getT1(), result.getT2()))
+                .flatMap(swept -> {
+                    if (swept.getT1() == 0) {
+                        return Mono.just(swept);
+                    }
+                    // 앞 순번이 빠졌으니 순번 변경 알림 ( near-cache 는 무효화 )
+                    rankNearCache.invalidate(queue);
+                    singleFlight.invalidate(queue);
+                    return userQueueEventService.publishMoved(queue, 0L, QueueMovedEvent.INVALIDATE).thenReturn(swept);
+                });
+    }
+
+    // 보호 중인 서비스의 응답 지연 / 에러 신호 ( aimd 정책이 허용 속도를 조절 )
+    public Mono<Long> reportFeedback(final String queue,final Long latencyMillis,final Boolean error) {
+        return userQueueEventService.publishFeedback(new AdmissionFeedbackEvent(queue, latencyMillis, error));
+    }
+
+    // 대기열 하나의 이번 tick 진입 허용 ( 정책이 계산한 인원만큼, 최대 maxAllowUserCount )
+    private Mono<Tuple2<String, Long>> admitQueue(final String queue,final Long fence) {
+        var policy = admissionPolicies.of(queue);
+        var activeSessions = policy.requiresActiveSessions()
+                ? queueStore.activeSessions(queue)
+                : Mono.just(0L);
+
+        return activeSessions
+                .map(active -> Math.min(policy.permits(System.nanoTime(), active), schedulerProperties.maxAllowUserCount(queue)))
+                .filter(permits -> permits > 0)
+                .flatMap(permits -> allowUser(queue, permits, fence))
+                .doOnNext(allowed -> {
+                    if (allowed >= 0) {
+                        policy.onAdmitted(allowed);
+                    }
+                })
+                .map(allowed -> Tuples.of(queue, allowed));
+    }
 
-        return Mono.just(hexString.toString());
+    // 담당하는 대기열 -> 펜싱 토큰
+    // 로컬 저장소는 노드 하나만 쓰므로 리스 없이 모든 대기열을 담당한다
+    private Flux<Tuple2<String, Long>> ownedQueues() {
+        if (queueStore.isLocal()) {
+            return queueStore.queues().map(queue -> Tuples.of(queue, 0L));
+        }
+        return admissionLeaseService.renewIfDue()
+                .flatMapMany(ownedShards -> queueStore.queues()
+                        .filter(queue -> ownedShards.containsKey(admissionLeaseService.shardOf(queue)))
+                        .map(queue -> Tuples.of(queue, ownedShards.get(admissionLeaseService.shardOf(queue)))));
     }
 
-    @Scheduled(fixedDelay = 10000 , initialDelay = 5000) //서버시작하고 5초 쉬었다가  3초마다 스케쥴링
+    @Scheduled(fixedDelayString = "${scheduler.tick:500}", initialDelay = 5000) //서버시작하고 5초 쉬었다가 tick 마다 스케쥴링
     public void scheduleAllowUser() {
-        if (!scheudling) {
-            log.info("passed schedule...");
+        if (!schedulerProperties.isEnabled()) {
+            log.debug("passed schedule...");
             return ;
         }
-        log.info("called schedule...");
-
-        var maxAllowUserCount = 100L;
+        // 이전 tick 이 아직 끝나지 않았으면 건너뛴다
+        if (!scheduling.compareAndSet(false, true)) {
+            return ;
+        }
+        log.debug("called schedule...");
 
         // 사용자를 허용하는 코드 작성
-        reactiveRedisTemplate.scan(ScanOptions.scanOptions().match(USER_QUEUE_WAIT_KEY_FOR_SCAN)
-                .count(100) // 100명까지 조회
-                .build())
-                .map(key -> key.split(":")[2])
-                .flatMap(queue -> allowUser(queue,maxAllowUserCount).map(allowed -> Tuples.of(queue,allowed)))
-                .doOnNext(tuple -> log.info("Tried %d and allowed %d members of %s queue".formatted(maxAllowUserCount,tuple.getT2(),tuple.getT1())))
+        // 대기 인원이 있는 대기열 목록만 조회해서 대기열별로 병렬 처리
+        // 노드가 여러대여도 리스를 가진 샤드의 대기열만 처리한다
+        ownedQueues()
+                .flatMap(owned -> admitQueue(owned.getT1(), queueStore.isLocal() ? null : owned.getT2()), schedulerProperties.getConcurrency())
+                .doOnNext(tuple -> {
+                    if (tuple.getT2() < 0) {
+                        log.warn("Lost scheduler lease while allowing %s queue".formatted(tuple.getT1()));
+                    } else if (tuple.getT2() > 0) {
+                        log.info("Allowed %d members of %s queue".formatted(tuple.getT2(),tuple.getT1()));
+                    }
+                })
+                .doOnError(ex -> log.warn("failed to schedule allow user", ex))
+                .transform(tick -> userQueueMetrics.timed(userQueueMetrics.tickTimer(), tick))
+                .doFinally(signal -> scheduling.set(false))
                 .subscribe();
 
     }
+
+    @Scheduled(fixedDelayString = "${scheduler.sweep.interval:5000}", initialDelay = 5000)
+    public void scheduleSweep() {
+        if (!schedulerProperties.isEnabled()) {
+            return ;
+        }
+
+        // 리스를 가진 샤드의 대기열만 정리 ( 리스는 scheduleAllowUser 에서 갱신 )
+        queueStore.queues()
+                .filter(queue -> queueStore.isLocal() || admissionLeaseService.fenceOf(queue) != null)
+                .flatMap(queue -> sweepQueue(queue).map(swept -> Tuples.of(queue, swept.getT1(), swept.getT2())), schedulerProperties.getConcurrency())
+                .filter(tuple -> tuple.getT2() > 0 || tuple.getT3() > 0)
+                .doOnNext(tuple -> log.info("Swept %d waiters and %d proceeded members of %s queue".formatted(tuple.getT2(),tuple.getT3(),tuple.getT1())))
+                .doOnError(ex -> log.warn("failed to sweep queues", ex))
+                .subscribe();
+    }
 }
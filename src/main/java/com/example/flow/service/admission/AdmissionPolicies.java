@@ -0,0 +1,59 @@
+package com.example.flow.service.admission;
+
+import com.example.flow.config.SchedulerProperties;
+import com.example.flow.service.UserQueueEventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 대기열별 진입 허용 정책 ( 설정 scheduler.policy / scheduler.queues.<queue>.policy )
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class AdmissionPolicies {
+
+    private final SchedulerProperties schedulerProperties;
+
+    private final UserQueueEventService userQueueEventService;
+
+    private final Map<String, AdmissionPolicy> policies = new ConcurrentHashMap<>();
+
+    public AdmissionPolicy of(final String queue) {
+        return policies.computeIfAbsent(queue, this::create);
+    }
+
+    // 보호 중인 서비스의 응답 지연 / 에러 신호 전달
+    public void feedback(final String queue, final long latencyMillis, final boolean error) {
+        of(queue).onFeedback(latencyMillis, error);
+    }
+
+    // 다른 노드로 들어온 신호도 받는다
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeFeedback() {
+        if (!schedulerProperties.isEnabled()) {
+            return ;
+        }
+        userQueueEventService.feedback()
+                .doOnNext(event -> feedback(event.queue(), event.latencyMillis(), event.error()))
+                .doOnError(ex -> log.warn("admission feedback subscription failed", ex))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(5)))
+                .subscribe();
+    }
+
+    private AdmissionPolicy create(final String queue) {
+        var policy = schedulerProperties.policy(queue);
+        return switch (policy.getType()) {
+            case TOKEN_BUCKET -> new TokenBucketPolicy(policy.getRate(), policy.getBurst());
+            case TARGET_ACTIVE -> new TargetActivePolicy(policy.getTargetActive());
+            case AIMD -> new AimdPolicy(policy.getRate(), policy.getBurst(), policy.getMinRate(), policy.getMaxRate(),
+                    policy.getIncrease(), policy.getDecrease(), policy.getTargetLatency().toMillis());
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.flow.service.admission;
+
+// 진입 허용 정책 ( 대기열마다 하나씩, 스케쥴링 tick 마다 이번에 허용할 인원을 계산 )
+public interface AdmissionPolicy {
+
+    // 허용열 인원이 필요한 정책이면 true ( 필요할 때만 ZCARD 를 호출한다 )
+    default boolean requiresActiveSessions() {
+        return false;
+    }
+
+    // 이번 tick 에 허용할 인원
+    // nowNanos == System.nanoTime(), activeSessions == 허용열 인원 ( requiresActiveSessions 가 false 면 0 )
+    long permits(long nowNanos, long activeSessions);
+
+    // 실제로 허용된 인원 ( 대기열에 사람이 모자라면 permits 보다 적을 수 있다 )
+    default void onAdmitted(long admitted) {
+    }
+
+    // 보호 중인 서비스의 응답 지연 / 에러 신호
+    default void onFeedback(long latencyMillis, boolean error) {
+    }
+}
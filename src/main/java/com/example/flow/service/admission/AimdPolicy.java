@@ -0,0 +1,60 @@
+package com.example.flow.service.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// AIMD ( additive increase / multiplicative decrease )
+// - 직전 tick 이후 과부하 신호( 지연 > targetLatency 또는 에러 )가 있었으면 rate *= decrease
+// - 없었으면 rate += increase
+// - 실제 허용량은 토큰 버킷으로 계산 ( 직전 tick 이후 쌓인 토큰은 그동안의 rate 로 채우고 나서 rate 를 바꾼다 )
+public class AimdPolicy implements AdmissionPolicy {
+
+    private final TokenBucketPolicy bucket;
+
+    private final double minRate;
+
+    private final double maxRate;
+
+    private final double increase;
+
+    private final double decrease;
+
+    private final long targetLatencyMillis;
+
+    private final AtomicBoolean congested = new AtomicBoolean(false);
+
+    public AimdPolicy(double initialRate, long burst, double minRate, double maxRate,
+                      double increase, double decrease, long targetLatencyMillis) {
+        this.bucket = new TokenBucketPolicy(initialRate, burst);
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.increase = increase;
+        this.decrease = decrease;
+        this.targetLatencyMillis = targetLatencyMillis;
+    }
+
+    @Override
+    public long permits(long nowNanos, long activeSessions) {
+        var permits = bucket.permits(nowNanos, activeSessions);
+        var rate = bucket.getRate();
+        bucket.setRate(congested.getAndSet(false)
+                ? Math.max(minRate, rate * decrease)
+                : Math.min(maxRate, rate + increase));
+        return permits;
+    }
+
+    @Override
+    public void onAdmitted(long admitted) {
+        bucket.onAdmitted(admitted);
+    }
+
+    @Override
+    public void onFeedback(long latencyMillis, boolean error) {
+        if (error || latencyMillis > targetLatencyMillis) {
+            congested.set(true);
+        }
+    }
+
+    public double getRate() {
+        return bucket.getRate();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.flow.service.admission;
+
+// 허용열 인원을 targetActive 명으로 유지 ( 빠져나간 만큼만 채운다 )
+public class TargetActivePolicy implements AdmissionPolicy {
+
+    private final long targetActive;
+
+    public TargetActivePolicy(long targetActive) {
+        this.targetActive = targetActive;
+    }
+
+    @Override
+    public boolean requiresActiveSessions() {
+        return true;
+    }
+
+    @Override
+    public long permits(long nowNanos, long activeSessions) {
+        return Math.max(0L, targetActive - activeSessions);
+    }
+}
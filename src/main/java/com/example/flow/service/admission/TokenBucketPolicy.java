@@ -0,0 +1,42 @@
+package com.example.flow.service.admission;
+
+// 초당 rate 명씩 채워지고 최대 burst 명까지 쌓이는 토큰 버킷
+public class TokenBucketPolicy implements AdmissionPolicy {
+
+    private final long burst;
+
+    private volatile double rate;
+
+    private double tokens;
+
+    private long refilledAt = -1L;
+
+    public TokenBucketPolicy(double rate, long burst) {
+        this.rate = rate;
+        this.burst = burst;
+    }
+
+    @Override
+    public synchronized long permits(long nowNanos, long activeSessions) {
+        if (refilledAt < 0) {
+            tokens = burst; // 처음에는 가득 찬 상태로 시작
+        } else {
+            tokens = Math.min(burst, tokens + rate * (nowNanos - refilledAt) / 1_000_000_000d);
+        }
+        refilledAt = nowNanos;
+        return (long) tokens;
+    }
+
+    @Override
+    public synchronized void onAdmitted(long admitted) {
+        tokens = Math.max(0d, tokens - admitted);
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    void setRate(double rate) {
+        this.rate = rate;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.flow.service.store;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuple4;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 노드 하나 안에서만 쓰는 대기열 저장소 ( queue.store: memory )
+// - 대기열은 등록 순서 Fenwick tree 라서 순번 조회 / 등록 / 진입 허용이 O(log n), 네트워크 왕복 없음
+// - 대기열마다 lock 하나 ( 동작이 모두 짧아서 lock 을 잡은 채로 바로 끝난다 )
+// - 서버가 내려가면 대기열도 사라진다
+@Component
+@ConditionalOnProperty(name = "queue.store", havingValue = "memory")
+public class InMemoryQueueStore implements QueueStore {
+
+    // 대기열 하나의 초기 크기
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Line> lines = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public Mono<Tuple2<Boolean, Long>> register(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            var line = line(queue);
+            synchronized (line) {
+                var registered = line.waiting.add(userId, now());
+                if (!registered) {
+                    line.waiting.touch(userId, now());
+                }
+                return Tuples.of(registered, line.waiting.rank(userId));
+            }
+        });
+    }
+
+    // 마지막 접속 시각을 남기지 않으므로 순번을 한번 조회하기 전까지는 정리 대상이 아니다 ( redis 저장소와 같음 )
+    @Override
+    public Flux<Tuple3<Long, Long, Boolean>> registerBulk(final String queue, final Flux<Long> userIds) {
+        return userIds.map(userId -> {
+            var line = line(queue);
+            synchronized (line) {
+                var registered = line.waiting.add(userId, Long.MAX_VALUE);
+                return Tuples.of(userId, line.waiting.rank(userId), registered);
+            }
+        });
+    }
+
+    @Override
+    public Mono<Tuple2<Long, Long>> rank(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return Tuples.of(-1L, 0L);
+            }
+            synchronized (line) {
+                line.waiting.touch(userId, now());
+                return Tuples.of(line.waiting.rank(userId), line.head);
+            }
+        });
+    }
+
+    @Override
+    public Flux<Tuple2<Long, Long>> rankBulk(final String queue, final Flux<Long> userIds) {
+        return userIds.map(userId -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return Tuples.of(userId, -1L);
+            }
+            synchronized (line) {
+                return Tuples.of(userId, line.waiting.rank(userId));
+            }
+        });
+    }
+
+    // 노드 하나뿐이라 펜싱 토큰은 검사하지 않는다
+    @Override
+    public Mono<Tuple3<Long, Long, Boolean>> admit(final String queue, final long count, final Long fence) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return Tuples.of(0L, 0L, false);
+            }
+            synchronized (line) {
+                var admittedAt = System.currentTimeMillis();
+                long allowed = line.waiting.pollFirst(count, userId -> line.admit(userId, admittedAt));
+                line.head += allowed;
+                return Tuples.of(allowed, line.head, line.isEmpty());
+            }
+        });
+    }
+
+    @Override
+    public Mono<Long> admittedAt(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return null;
+            }
+            synchronized (line) {
+                var admittedAt = line.admitted.get(userId, -1L);
+                return admittedAt < 0 ? null : admittedAt;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> removeAdmitted(final String queue, final long userId) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return false;
+            }
+            synchronized (line) {
+                return line.admitted.remove(userId);
+            }
+        });
+    }
+
+    @Override
+    public Mono<Long> activeSessions(final String queue) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return 0L;
+            }
+            synchronized (line) {
+                return (long) line.admitted.size();
+            }
+        });
+    }
+
+    @Override
+    public Mono<Tuple4<Long, Long, Long, Boolean>> sweep(final String queue, final long waiterCutoff, final long admittedCutoff, final long batch) {
+        return Mono.fromSupplier(() -> {
+            var line = lines.get(queue);
+            if (line == null) {
+                return Tuples.of(0L, 0L, 0L, false);
+            }
+            synchronized (line) {
+                long stale = line.waiting.removeIdle(waiterCutoff, batch);
+                long expired = line.expire(admittedCutoff * 1000, batch);
+                return Tuples.of(stale, expired, (long) line.waiting.size(), line.isEmpty());
+            }
+        });
+    }
+
+    @Override
+    public Flux<String> queues() {
+        return Flux.defer(() -> Flux.fromStream(lines.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)));
+    }
+
+    private Line line(final String queue) {
+        return lines.computeIfAbsent(queue, key -> new Line());
+    }
+
+    private static long now() {
+        return Instant.now().getEpochSecond();
+    }
+
+    // 대기열 하나 ( 대기열 + 허용열 )
+    private static final class Line {
+
+        private final LongRankIndex waiting = new LongRankIndex(INITIAL_CAPACITY);
+
+        // 허용열 ( userId -> 허용 시각 epoch millis )
+        private final LongLongHashMap admitted = new LongLongHashMap(INITIAL_CAPACITY);
+
+        // 허용된 순서 ( 허용 시각이 오래된 것부터 만료시키기 위한 ring buffer, 다시 허용 / 회수된 항목은 만료시 건너뜀 )
+        private long[] admittedUserIds = new long[INITIAL_CAPACITY];
+
+        private long[] admittedTimes = new long[INITIAL_CAPACITY];
+
+        private int first;
+
+        private int count;
+
+        // 지금까지 허용된 누적 인원 ( 순번 near-cache 기준값 )
+        private long head;
+
+        private void admit(final long userId, final long admittedAt) {
+            admitted.put(userId, admittedAt);
+            if (count == admittedUserIds.length) {
+                grow();
+            }
+            var index = (first + count) & (admittedUserIds.length - 1);
+            admittedUserIds[index] = userId;
+            admittedTimes[index] = admittedAt;
+            count++;
+        }
+
+        // 허용 시각이 cutoff ( epoch millis ) 이전인 허용자를 최대 batch 명 제거
+        private long expire(final long cutoff, final long batch) {
+            long expired = 0;
+            while (count > 0 && expired < batch && admittedTimes[first] <= cutoff) {
+                var userId = admittedUserIds[first];
+                if (admitted.get(userId, -1L) == admittedTimes[first]) {
+                    admitted.remove(userId);
+                    expired++;
+                }
+                first = (first + 1) & (admittedUserIds.length - 1);
+                count--;
+            }
+            return expired;
+        }
+
+        private void grow() {
+            var userIds = new long[admittedUserIds.length * 2];
+            var times = new long[admittedTimes.length * 2];
+            for (int i = 0; i < count; i++) {
+                var index = (first + i) & (admittedUserIds.length - 1);
+                userIds[i] = admittedUserIds[index];
+                times[i] = admittedTimes[index];
+            }
+            admittedUserIds = userIds;
+            admittedTimes = times;
+            first = 0;
+        }
+
+        private synchronized boolean isEmpty() {
+            return waiting.size() == 0 && admitted.size() == 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.flow.service.store;
+
+import java.util.Arrays;
+
+// long -> long 해시맵 ( open addressing + linear probing, 박싱 없음 )
+// 삭제는 뒤쪽 항목을 당겨와서 tombstone 을 남기지 않는다
+final class LongLongHashMap {
+
+    // 빈 칸 표시 ( 이 값을 key 로 쓰는 경우는 따로 보관 )
+    private static final long FREE = 0L;
+
+    private long[] keys;
+
+    private long[] values;
+
+    private int mask;
+
+    private int size;
+
+    private boolean hasFreeKey;
+
+    private long freeValue;
+
+    LongLongHashMap(final int expected) {
+        var capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 8)) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size + (hasFreeKey ? 1 : 0);
+    }
+
+    boolean containsKey(final long key) {
+        return key == FREE ? hasFreeKey : keys[indexOf(key)] == key;
+    }
+
+    // 없으면 missing
+    long get(final long key, final long missing) {
+        if (key == FREE) {
+            return hasFreeKey ? freeValue : missing;
+        }
+        var index = indexOf(key);
+        return keys[index] == key ? values[index] : missing;
+    }
+
+    // 이미 있으면 덮어쓰지 않고 false
+    boolean putIfAbsent(final long key, final long value) {
+        if (key == FREE) {
+            if (hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = true;
+            freeValue = value;
+            return true;
+        }
+        var index = indexOf(key);
+        if (keys[index] == key) {
+            return false;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (mask + 1) / 2) {
+            resize();
+        }
+        return true;
+    }
+
+    void put(final long key, final long value) {
+        if (key == FREE) {
+            hasFreeKey = true;
+            freeValue = value;
+            return ;
+        }
+        var index = indexOf(key);
+        if (keys[index] != key) {
+            keys[index] = key;
+            if (++size > (mask + 1) / 2) {
+                values[index] = value;
+                resize();
+                return ;
+            }
+        }
+        values[index] = value;
+    }
+
+    boolean remove(final long key) {
+        if (key == FREE) {
+            var had = hasFreeKey;
+            hasFreeKey = false;
+            return had;
+        }
+        var index = indexOf(key);
+        if (keys[index] != key) {
+            return false;
+        }
+        shiftBack(index);
+        size--;
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    // key 가 있는 칸, 없으면 처음 만난 빈 칸
+    private int indexOf(final long key) {
+        var index = mix(key) & mask;
+        while (keys[index] != FREE && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    // 지운 칸 뒤에 밀려있던 항목을 제자리에 가깝게 당긴다
+    private void shiftBack(int hole) {
+        var index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            var key = keys[index];
+            if (key == FREE) {
+                break;
+            }
+            var home = mix(key) & mask;
+            // home 이 ( hole, index ] 구간 밖이면 hole 로 옮길 수 있다
+            if (hole <= index ? (hole >= home || home > index) : (hole >= home && home > index)) {
+                keys[hole] = key;
+                values[hole] = values[index];
+                hole = index;
+            }
+        }
+        keys[hole] = FREE;
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                var index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(final long key) {
+        var h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
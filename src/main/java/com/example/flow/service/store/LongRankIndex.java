@@ -0,0 +1,230 @@
+package com.example.flow.service.store;
+
+import java.util.function.LongConsumer;
+
+// 등록 순서 순번 인덱스 ( 박싱 없음 )
+// - 등록할 때마다 증가하는 seq 를 칸 번호로 쓰고, 칸마다 userId 와 마지막 접속 시각을 둔다
+// - 칸이 차있는지를 Fenwick tree 로 세어서 순번 조회 / 등록 / 삭제가 O(log n)
+// - 앞에서부터 꺼내면서 생긴 빈 칸은 배열이 찰 때 한번에 당겨서 정리한다
+// - 칸을 마지막 접속 순서로도 잇는다 ( 접속할 때마다 맨 뒤로 ), 정리는 오래된 쪽에서 제거할 인원만큼만 본다
+//   접속 시각이 Long.MAX_VALUE ( 대량 등록 뒤 아직 조회 전 ) 인 칸은 정리 대상이 아니라 잇지 않는다
+// 동기화는 호출하는 쪽에서 한다
+final class LongRankIndex {
+
+    // userId -> seq
+    private final LongLongHashMap seqs;
+
+    // seq 가 base 인 칸이 0 번
+    private long base;
+
+    private long[] userIds;
+
+    private long[] seenAt;
+
+    private boolean[] present;
+
+    // 마지막 접속 순서 연결 ( 칸 번호, 없으면 -1 )
+    private int[] older;
+
+    private int[] newer;
+
+    // 가장 오래 / 최근에 접속한 칸
+    private int oldest = -1;
+
+    private int newest = -1;
+
+    // 1 부터 시작하는 Fenwick tree ( tree[i] == 칸 [i - lowbit(i), i) 에 있는 인원 )
+    private int[] tree;
+
+    // 처음으로 차있을 수 있는 칸
+    private int head;
+
+    // 다음 등록이 들어갈 칸
+    private int tail;
+
+    private int size;
+
+    LongRankIndex(final int capacity) {
+        var initial = Integer.highestOneBit(Math.max(capacity - 1, 8)) << 1;
+        seqs = new LongLongHashMap(initial);
+        userIds = new long[initial];
+        seenAt = new long[initial];
+        present = new boolean[initial];
+        older = new int[initial];
+        newer = new int[initial];
+        tree = new int[initial + 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 이미 있으면 false
+    boolean add(final long userId, final long now) {
+        if (tail == userIds.length) {
+            compactOrGrow();
+        }
+        if (!seqs.putIfAbsent(userId, base + tail)) {
+            return false;
+        }
+        userIds[tail] = userId;
+        seenAt[tail] = now;
+        present[tail] = true;
+        link(tail);
+        update(tail, 1);
+        tail++;
+        size++;
+        return true;
+    }
+
+    // 0부터 시작하는 순번, 없으면 -1
+    long rank(final long userId) {
+        var slot = slotOf(userId);
+        return slot < 0 ? -1 : prefix(slot);
+    }
+
+    // 마지막 접속 시각 갱신
+    void touch(final long userId, final long now) {
+        var slot = slotOf(userId);
+        if (slot >= 0) {
+            unlink(slot);
+            seenAt[slot] = now;
+            link(slot);
+        }
+    }
+
+    // 앞에서 count 명을 꺼낸다
+    int pollFirst(final long count, final LongConsumer consumer) {
+        int polled = 0;
+        while (polled < count && size > 0) {
+            while (!present[head]) {
+                head++;
+            }
+            consumer.accept(userIds[head]);
+            removeSlot(head);
+            polled++;
+        }
+        return polled;
+    }
+
+    // 마지막 접속 시각이 cutoff 이전인 대기자를 오래된 순서로 최대 batch 명 제거 ( O(제거 인원 * log n) )
+    // 접속 시각은 접속 순서대로 커진다고 보고 cutoff 보다 최근인 칸을 만나면 멈춘다
+    int removeIdle(final long cutoff, final long batch) {
+        int removed = 0;
+        while (removed < batch && oldest >= 0 && seenAt[oldest] <= cutoff) {
+            removeSlot(oldest);
+            removed++;
+        }
+        return removed;
+    }
+
+    private int slotOf(final long userId) {
+        var seq = seqs.get(userId, -1L);
+        return seq < 0 ? -1 : (int) (seq - base);
+    }
+
+    private void removeSlot(final int slot) {
+        seqs.remove(userIds[slot]);
+        present[slot] = false;
+        unlink(slot);
+        update(slot, -1);
+        size--;
+    }
+
+    // 최근 접속 쪽 끝에 붙인다
+    private void link(final int slot) {
+        if (seenAt[slot] == Long.MAX_VALUE) {
+            return;
+        }
+        older[slot] = newest;
+        newer[slot] = -1;
+        if (newest >= 0) {
+            newer[newest] = slot;
+        } else {
+            oldest = slot;
+        }
+        newest = slot;
+    }
+
+    private void unlink(final int slot) {
+        if (seenAt[slot] == Long.MAX_VALUE) {
+            return;
+        }
+        if (older[slot] >= 0) {
+            newer[older[slot]] = newer[slot];
+        } else {
+            oldest = newer[slot];
+        }
+        if (newer[slot] >= 0) {
+            older[newer[slot]] = older[slot];
+        } else {
+            newest = older[slot];
+        }
+    }
+
+    // 칸 [0, slot) 에 있는 인원
+    private long prefix(final int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void update(final int slot, final int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // 앞쪽 빈 칸이 절반 이상이면 당기고, 아니면 두배로 늘린다 ( seq 는 바뀌지 않고 base 만 이동 )
+    private void compactOrGrow() {
+        while (head < tail && !present[head]) {
+            head++;
+        }
+        var live = tail - head;
+        var capacity = live * 2 > userIds.length ? userIds.length * 2 : userIds.length;
+
+        var movedUserIds = new long[capacity];
+        var movedSeenAt = new long[capacity];
+        var movedPresent = new boolean[capacity];
+        var movedOlder = new int[capacity];
+        var movedNewer = new int[capacity];
+        System.arraycopy(userIds, head, movedUserIds, 0, live);
+        System.arraycopy(seenAt, head, movedSeenAt, 0, live);
+        System.arraycopy(present, head, movedPresent, 0, live);
+        // 접속 순서 연결도 같이 당긴다
+        for (int i = 0; i < live; i++) {
+            if (movedPresent[i]) {
+                movedOlder[i] = shift(older[head + i]);
+                movedNewer[i] = shift(newer[head + i]);
+            }
+        }
+
+        userIds = movedUserIds;
+        seenAt = movedSeenAt;
+        present = movedPresent;
+        older = movedOlder;
+        newer = movedNewer;
+        oldest = shift(oldest);
+        newest = shift(newest);
+        base += head;
+        tail = live;
+        head = 0;
+
+        // O(n) 으로 다시 쌓기
+        tree = new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            tree[i] += present[i - 1] ? 1 : 0;
+            var parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    // 당기기 전 칸 번호 -> 당긴 뒤 칸 번호
+    private int shift(final int slot) {
+        return slot < 0 ? -1 : slot - head;
+    }
+}
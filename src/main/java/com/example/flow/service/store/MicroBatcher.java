@@ -0,0 +1,86 @@
+package com.example.flow.service.store;
+
+import com.example.flow.config.BatchProperties;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+
+// 동시에 들어온 조회를 대기열별로 모아서 한번에 보낸다
+// - 대기열에 첫 조회가 들어오면 window 뒤에 보내고, 그 전에 maxSize 만큼 모이면 바로 보낸다
+// - 결과는 보낸 순서대로 각 조회에 돌려주고, 실패하면 묶인 조회 모두 실패
+final class MicroBatcher<T> {
+
+    private final BatchProperties batchProperties;
+
+    // ( queue, userIds ) -> userId 순서대로 결과
+    private final BiFunction<String, List<Long>, Mono<List<T>>> lookup;
+
+    // 보낸 묶음 크기 기록
+    private final IntConsumer batchSize;
+
+    private final Map<String, Batch<T>> pending = new ConcurrentHashMap<>();
+
+    MicroBatcher(final BatchProperties batchProperties,
+                 final BiFunction<String, List<Long>, Mono<List<T>>> lookup,
+                 final IntConsumer batchSize) {
+        this.batchProperties = batchProperties;
+        this.lookup = lookup;
+        this.batchSize = batchSize;
+    }
+
+    Mono<T> submit(final String queue, final long userId) {
+        return Mono.create(sink -> {
+            var created = new ArrayList<Batch<T>>(1);
+            var full = new ArrayList<Batch<T>>(1);
+            pending.compute(queue, (key, batch) -> {
+                if (batch == null) {
+                    batch = new Batch<>();
+                    created.add(batch);
+                }
+                batch.userIds.add(userId);
+                batch.sinks.add(sink);
+                if (batch.userIds.size() >= batchProperties.getMaxSize()) {
+                    full.add(batch);
+                    return null;
+                }
+                return batch;
+            });
+
+            if (!full.isEmpty()) {
+                flush(queue, full.get(0));
+            } else if (!created.isEmpty()) {
+                // 자기가 만든 묶음만 보낸다 ( maxSize 로 먼저 나갔으면 다음 묶음을 window 보다 일찍 보내지 않도록 )
+                var batch = created.get(0);
+                Schedulers.parallel().schedule(() -> {
+                    if (pending.remove(queue, batch)) {
+                        flush(queue, batch);
+                    }
+                }, batchProperties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private void flush(final String queue, final Batch<T> batch) {
+        batchSize.accept(batch.userIds.size());
+        lookup.apply(queue, batch.userIds)
+                .defaultIfEmpty(List.of())
+                .subscribe(results -> {
+                    for (int i = 0; i < batch.sinks.size(); i++) {
+                        batch.sinks.get(i).success(i < results.size() ? results.get(i) : null);
+                    }
+                }, ex -> batch.sinks.forEach(sink -> sink.error(ex)));
+    }
+
+    private static final class Batch<T> {
+        private final List<Long> userIds = new ArrayList<>();
+        private final List<MonoSink<T>> sinks = new ArrayList<>();
+    }
+}
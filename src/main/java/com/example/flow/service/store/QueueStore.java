@@ -0,0 +1,51 @@
+package com.example.flow.service.store;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuple4;
+
+// 대기열 저장소 ( queue.store )
+// - redis  : 노드 여러대가 같은 대기열을 공유 ( 기본 )
+// - memory : 노드 하나 안에서만 쓰는 대기열 ( 단일 노드 배포 / 테스트 )
+// 순번은 0부터 시작하고 대기열에 없으면 -1
+public interface QueueStore {
+
+    // 노드 하나에서만 쓰는 저장소인지 ( 스케쥴러 리스 / pub/sub 이 필요 없음 )
+    boolean isLocal();
+
+    // 등록 + 마지막 접속 시각 기록 ( 등록여부, 순번 )
+    Mono<Tuple2<Boolean, Long>> register(String queue, long userId);
+
+    // 대량 등록 ( userId, 순번, 등록여부 ) - 입력 순서대로, 마지막 접속 시각은 남기지 않음
+    Flux<Tuple3<Long, Long, Boolean>> registerBulk(String queue, Flux<Long> userIds);
+
+    // 순번 조회 + 마지막 접속 시각 갱신 ( 순번, 지금까지 허용된 인원 )
+    Mono<Tuple2<Long, Long>> rank(String queue, long userId);
+
+    // 순번 대량 조회 ( userId, 순번 ) - 마지막 접속 시각은 갱신하지 않음
+    Flux<Tuple2<Long, Long>> rankBulk(String queue, Flux<Long> userIds);
+
+    // 앞에서 count 명을 꺼내 허용열로 이동 ( 허용된 인원 ( 펜싱 토큰이 맞지 않으면 -1 ), 지금까지 허용된 인원, 대기열 목록에서 빠졌는지 )
+    Mono<Tuple3<Long, Long, Boolean>> admit(String queue, long count, Long fence);
+
+    // 허용 시각 ( epoch millis ), 허용되지 않았으면 empty
+    Mono<Long> admittedAt(String queue, long userId);
+
+    default Mono<Boolean> isAdmitted(String queue, long userId) {
+        return admittedAt(queue, userId).hasElement();
+    }
+
+    // 허용열에서 제거
+    Mono<Boolean> removeAdmitted(String queue, long userId);
+
+    // 허용열 인원
+    Mono<Long> activeSessions(String queue);
+
+    // 떠난 대기자 / 만료된 허용자 정리, cutoff 는 epoch seconds ( 제거된 대기자 수, 제거된 허용자 수, 남은 대기 인원, 대기열 목록에서 빠졌는지 )
+    Mono<Tuple4<Long, Long, Long, Boolean>> sweep(String queue, long waiterCutoff, long admittedCutoff, long batch);
+
+    // 대기 / 허용 인원이 있는 대기열 목록
+    Flux<String> queues();
+}
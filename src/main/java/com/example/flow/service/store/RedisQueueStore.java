@@ -0,0 +1,379 @@
+package com.example.flow.service.store;
+
+import com.example.flow.config.BatchProperties;
+import com.example.flow.config.BulkProperties;
+import com.example.flow.config.RankProperties;
+import com.example.flow.config.SchedulerProperties;
+import com.example.flow.service.AdmissionEvent;
+import com.example.flow.service.AdmissionLeaseService;
+import com.example.flow.service.AdmissionStreamService;
+import com.example.flow.service.MemberCodec;
+import com.example.flow.service.ShardedWaitQueueService;
+import com.example.flow.service.UserQueueMetrics;
+import com.example.flow.service.UserQueueScripts;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuple4;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// redis 대기열 저장소
+// redis sortedset
+// - key : userId member ( queue.member.encoding, MemberCodec )
+// - value : 대기열별 등록 순번 ( INCR, 먼저 등록한 사람이 앞, 같은 초에 들어와도 등록 순서 유지 )
+// 여러 명령이 필요한 동작은 스크립트 한번으로 처리해서 중간에 실패해도 사용자가 유실되지 않는다
+// 동시에 들어온 순번 / 허용 여부 조회는 대기열별로 묶어서 명령 한번으로 보낸다 ( queue.batch )
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "queue.store", havingValue = "redis", matchIfMissing = true)
+public class RedisQueueStore implements QueueStore {
+
+    // 대기열 등록
+    private final String USER_QUEUE_WAIT_KEY = "users:queue:%s:wait";
+
+    // 대기열 인원 스캔 ( 기존 키를 활성 대기열 목록으로 옮길때만 사용 )
+    private final String USER_QUEUE_WAIT_KEY_FOR_SCAN = "users:queue:*:wait";
+
+    // 대기자 마지막 접속 시각 ( 순번 조회시 갱신, 오래되면 떠난 것으로 보고 제거 )
+    private final String USER_QUEUE_SEEN_KEY = "users:queue:%s:seen";
+
+    // 지금까지 허용된 누적 인원 ( 순번 near-cache 기준값 )
+    private final String USER_QUEUE_HEAD_KEY = "users:queue:%s:head";
+
+    // 대기열 등록 순번 ( wait score )
+    private final String USER_QUEUE_SEQ_KEY = "users:queue:%s:seq";
+
+    // 마지막으로 허용된 대기자의 등록 순번 ( 대략적인 순번 = 내 등록 순번 - head-seq - 1 )
+    private final String USER_QUEUE_HEAD_SEQ_KEY = "users:queue:%s:head-seq";
+
+    // 마지막 기존 대기자 score ( 등록 순번 도입 이전 unix timestamp score 대기자가 남아있는 동안은 대략적인 순번 대신 ZRANK )
+    private final String USER_QUEUE_LEGACY_SEQ_KEY = "users:queue:%s:legacy-seq";
+
+    // 대기 인원이 있는 대기열 목록 ( 등록시 추가, 비면 제거 )
+    private final String USER_QUEUE_REGISTRY_KEY = "users:queue:registry";
+
+    // 허용인원 프로세스
+    private final String USER_QUEUE_PROCEED_KEY = "users:queue:%s:proceed";
+
+    private final ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    private final UserQueueScripts userQueueScripts;
+
+    private final ShardedWaitQueueService shardedWaitQueueService;
+
+    private final AdmissionLeaseService admissionLeaseService;
+
+    private final SchedulerProperties schedulerProperties;
+
+    private final BulkProperties bulkProperties;
+
+    private final RankProperties rankProperties;
+
+    private final AdmissionStreamService admissionStreamService;
+
+    private final MemberCodec memberCodec;
+
+    private final UserQueueMetrics userQueueMetrics;
+
+    // 묶어서 보내지 않으면 null
+    private final MicroBatcher<Tuple2<Long, Long>> rankBatcher;
+
+    private final MicroBatcher<Long> admittedBatcher;
+
+    public RedisQueueStore(ReactiveRedisTemplate<String,String> reactiveRedisTemplate,
+                           UserQueueScripts userQueueScripts,
+                           ShardedWaitQueueService shardedWaitQueueService,
+                           AdmissionLeaseService admissionLeaseService,
+                           SchedulerProperties schedulerProperties,
+                           BulkProperties bulkProperties,
+                           BatchProperties batchProperties,
+                           RankProperties rankProperties,
+                           AdmissionStreamService admissionStreamService,
+                           MemberCodec memberCodec,
+                           UserQueueMetrics userQueueMetrics) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.userQueueScripts = userQueueScripts;
+        this.shardedWaitQueueService = shardedWaitQueueService;
+        this.admissionLeaseService = admissionLeaseService;
+        this.schedulerProperties = schedulerProperties;
+        this.bulkProperties = bulkProperties;
+        this.rankProperties = rankProperties;
+        this.admissionStreamService = admissionStreamService;
+        this.memberCodec = memberCodec;
+        this.userQueueMetrics = userQueueMetrics;
+        this.rankBatcher = batchProperties.isEnabled()
+                ? new MicroBatcher<>(batchProperties, this::rankBatch, size -> userQueueMetrics.batchSize("rank", size))
+                : null;
+        this.admittedBatcher = batchProperties.isEnabled()
+                ? new MicroBatcher<>(batchProperties, this::admittedBatch, size -> userQueueMetrics.batchSize("token", size))
+                : null;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    // 기존에 등록된 대기열을 활성 대기열 목록으로 옮긴다 ( 목록 도입 이전 데이터용, 시작시 한번만 스캔 )
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerExistingQueues() {
+        if (!schedulerProperties.isEnabled()) {
+            return ;
+        }
+
+        reactiveRedisTemplate.scan(ScanOptions.scanOptions().match(USER_QUEUE_WAIT_KEY_FOR_SCAN).count(1000).build())
+                .filter(key -> !key.contains("{")) // 샤드 대기열 키 제외
+                .map(key -> key.substring("users:queue:".length(), key.length() - ":wait".length()))
+                .buffer(1000)
+                .flatMap(queues -> reactiveRedisTemplate.opsForSet().add(USER_QUEUE_REGISTRY_KEY, queues.toArray(String[]::new)))
+                .reduce(0L, Long::sum)
+                .doOnNext(added -> log.info("registered %d existing queues".formatted(added)))
+                .doOnError(ex -> log.warn("failed to register existing queues", ex))
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    // 등록(INCR + ZADD) 과 순번 조회(ZRANK, 대략적인 순번이면 등록 순번 차이) 를 스크립트 한번으로 처리
+    @Override
+    public Mono<Tuple2<Boolean, Long>> register(final String queue, final long userId) {
+        if (shardedWaitQueueService.isSharded(queue)) {
+            return userQueueMetrics.command("register", shardedWaitQueueService.register(queue, userId));
+        }
+        var unixTimestamp = Instant.now().getEpochSecond();
+        var register = reactiveRedisTemplate.execute(userQueueScripts.getRegisterWaitQueue(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_REGISTRY_KEY, USER_QUEUE_SEEN_KEY.formatted(queue), USER_QUEUE_SEQ_KEY.formatted(queue), USER_QUEUE_HEAD_SEQ_KEY.formatted(queue), USER_QUEUE_LEGACY_SEQ_KEY.formatted(queue)),
+                        List.of(String.valueOf(unixTimestamp), memberCodec.encode(userId), queue, memberCodec.legacy(userId), approximate()))
+                .next();
+        return userQueueMetrics.command("register", register)
+                .map(result -> Tuples.of(result.get(0) == 1L, result.get(1)));
+    }
+
+    // chunk 단위로 스크립트 한번씩 호출하고, 동시에 concurrency 개까지 보내서 커넥션 하나에 파이프라이닝 되도록 한다
+    @Override
+    public Flux<Tuple3<Long, Long, Boolean>> registerBulk(final String queue, final Flux<Long> userIds) {
+        if (shardedWaitQueueService.isSharded(queue)) {
+            // 샤드 대기열은 사용자마다 샤드가 달라서 건별로 보내고 동시에 chunk 크기만큼 파이프라이닝
+            return userIds.flatMapSequential(userId -> userQueueMetrics.command("register-bulk", shardedWaitQueueService.register(queue, userId))
+                            .map(registered -> Tuples.of(userId, registered.getT2(), registered.getT1())),
+                    bulkProperties.getChunkSize());
+        }
+        return userIds
+                .buffer(bulkProperties.getChunkSize())
+                .flatMapSequential(chunk -> registerChunk(queue, chunk), bulkProperties.getConcurrency());
+    }
+
+    private Flux<Tuple3<Long, Long, Boolean>> registerChunk(final String queue, final List<Long> userIds) {
+        var args = new ArrayList<String>(userIds.size() * 2 + 1);
+        args.add(queue);
+        addMembers(args, userIds);
+
+        var register = reactiveRedisTemplate.execute(userQueueScripts.getRegisterWaitQueueBulk(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_REGISTRY_KEY, USER_QUEUE_SEQ_KEY.formatted(queue), USER_QUEUE_LEGACY_SEQ_KEY.formatted(queue)),
+                        args)
+                .next();
+        return userQueueMetrics.command("register-bulk", register)
+                .flatMapIterable(result -> {
+                    var registered = new ArrayList<Tuple3<Long, Long, Boolean>>(userIds.size());
+                    for (int i = 0; i < userIds.size(); i++) {
+                        registered.add(Tuples.of(userIds.get(i), result.get(i * 2 + 1), result.get(i * 2) == 1L));
+                    }
+                    return registered;
+                });
+    }
+
+    @Override
+    public Mono<Tuple2<Long, Long>> rank(final String queue, final long userId) {
+        if (rankBatcher != null && !shardedWaitQueueService.isSharded(queue)) {
+            return rankBatcher.submit(queue, userId);
+        }
+        var zrank = shardedWaitQueueService.isSharded(queue)
+                ? shardedWaitQueueService.rank(queue, userId, true)
+                : reactiveRedisTemplate.execute(userQueueScripts.getGetRank(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue), USER_QUEUE_HEAD_KEY.formatted(queue), USER_QUEUE_HEAD_SEQ_KEY.formatted(queue), USER_QUEUE_LEGACY_SEQ_KEY.formatted(queue)),
+                        List.of(memberCodec.encode(userId), String.valueOf(Instant.now().getEpochSecond()), memberCodec.legacy(userId), approximate()))
+                .next()
+                .map(result -> Tuples.of(result.get(0), result.get(1)));
+        return userQueueMetrics.command("rank", zrank);
+    }
+
+    // 묶인 순번 조회를 스크립트 한번으로 ( head 는 묶음 전체가 같은 값 )
+    private Mono<List<Tuple2<Long, Long>>> rankBatch(final String queue, final List<Long> userIds) {
+        var args = new ArrayList<String>(userIds.size() * 2 + 2);
+        args.add(String.valueOf(Instant.now().getEpochSecond()));
+        args.add(approximate());
+        addMembers(args, userIds);
+
+        var ranks = reactiveRedisTemplate.execute(userQueueScripts.getGetRankBatch(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue), USER_QUEUE_HEAD_KEY.formatted(queue), USER_QUEUE_HEAD_SEQ_KEY.formatted(queue), USER_QUEUE_LEGACY_SEQ_KEY.formatted(queue)),
+                        args)
+                .next();
+        return userQueueMetrics.command("rank-batch", ranks)
+                .map(result -> {
+                    var head = result.get(0);
+                    var ranked = new ArrayList<Tuple2<Long, Long>>(userIds.size());
+                    for (int i = 0; i < userIds.size(); i++) {
+                        ranked.add(Tuples.of(result.get(i + 1), head));
+                    }
+                    return ranked;
+                });
+    }
+
+    @Override
+    public Flux<Tuple2<Long, Long>> rankBulk(final String queue, final Flux<Long> userIds) {
+        if (shardedWaitQueueService.isSharded(queue)) {
+            return userIds.flatMapSequential(userId -> userQueueMetrics.command("rank-bulk", shardedWaitQueueService.rank(queue, userId, false))
+                            .map(ranked -> Tuples.of(userId, ranked.getT1())),
+                    bulkProperties.getChunkSize());
+        }
+        return userIds
+                .buffer(bulkProperties.getChunkSize())
+                .flatMapSequential(chunk -> rankChunk(queue, chunk), bulkProperties.getConcurrency());
+    }
+
+    private Flux<Tuple2<Long, Long>> rankChunk(final String queue, final List<Long> userIds) {
+        var args = new ArrayList<String>(userIds.size() * 2);
+        addMembers(args, userIds);
+        var ranks = reactiveRedisTemplate.execute(userQueueScripts.getGetRankBulk(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue)),
+                        args)
+                .next();
+        return userQueueMetrics.command("rank-bulk", ranks)
+                .flatMapIterable(result -> {
+                    var ranked = new ArrayList<Tuple2<Long, Long>>(userIds.size());
+                    for (int i = 0; i < userIds.size(); i++) {
+                        ranked.add(Tuples.of(userIds.get(i), result.get(i)));
+                    }
+                    return ranked;
+                });
+    }
+
+    // popMin + add + 진입 허용 이벤트를 스크립트 한번으로 처리 ( 샤드 대기열은 샤드별 앞쪽을 합쳐서 전체 순서대로 이동 )
+    @Override
+    public Mono<Tuple3<Long, Long, Boolean>> admit(final String queue, final long count, final Long fence) {
+        var admittedAt = AdmissionEvent.admittedAtScore(System.currentTimeMillis());
+        var allow = shardedWaitQueueService.isSharded(queue)
+                ? shardedWaitQueueService.allow(queue, count, fence, admissionLeaseService.fenceKey(queue)).map(result -> Tuples.of(result.getT1(), result.getT2(), false))
+                : reactiveRedisTemplate.execute(userQueueScripts.getAllowUser(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_PROCEED_KEY.formatted(queue), USER_QUEUE_REGISTRY_KEY, admissionLeaseService.fenceKey(queue), USER_QUEUE_SEEN_KEY.formatted(queue), USER_QUEUE_HEAD_KEY.formatted(queue), admissionStreamService.streamKey(queue), USER_QUEUE_HEAD_SEQ_KEY.formatted(queue)),
+                        List.of(String.valueOf(count), admittedAt, queue, fence == null ? "" : fence.toString(), admissionStreamService.maxLength(), admissionStreamService.ttlSeconds()))
+                .next()
+                .map(result -> Tuples.of(result.get(0), result.get(1), result.get(2) == 1));
+        return userQueueMetrics.command("allow", allow);
+    }
+
+    @Override
+    public Mono<Long> admittedAt(final String queue, final long userId) {
+        if (admittedBatcher != null && !shardedWaitQueueService.isSharded(queue)) {
+            return admittedBatcher.submit(queue, userId);
+        }
+        var proceedKey = proceedKey(queue, userId);
+        return userQueueMetrics.command("token", proceedLookup(userId, member -> reactiveRedisTemplate.opsForZSet().score(proceedKey, member)))
+                .map(AdmissionEvent::admittedAtMillis);
+    }
+
+    @Override
+    public Mono<Boolean> isAdmitted(final String queue, final long userId) {
+        if (admittedBatcher != null && !shardedWaitQueueService.isSharded(queue)) {
+            return admittedBatcher.submit(queue, userId).hasElement();
+        }
+        var proceedKey = proceedKey(queue, userId);
+        return userQueueMetrics.command("isAllowed", proceedLookup(userId, member -> reactiveRedisTemplate.opsForZSet().rank(proceedKey, member)))
+                .hasElement();
+    }
+
+    // 묶인 허용 여부 조회를 ZMSCORE 한번으로 ( 허용되지 않았으면 null, 인코딩을 바꾸는 중이면 이전 인코딩 member 도 같이 조회 )
+    private Mono<List<Long>> admittedBatch(final String queue, final List<Long> userIds) {
+        var members = new ArrayList<String>(userIds.size() * 2);
+        userIds.forEach(userId -> members.add(memberCodec.encode(userId)));
+        if (memberCodec.isMigrating()) {
+            userIds.forEach(userId -> members.add(memberCodec.legacy(userId)));
+        }
+        var scores = reactiveRedisTemplate.opsForZSet().score(USER_QUEUE_PROCEED_KEY.formatted(queue), members.toArray());
+        return userQueueMetrics.command("token-batch", scores)
+                .map(result -> {
+                    var admittedAt = new ArrayList<Long>(userIds.size());
+                    for (int i = 0; i < userIds.size(); i++) {
+                        var score = result.get(i);
+                        if (score == null && result.size() > userIds.size()) {
+                            score = result.get(userIds.size() + i);
+                        }
+                        admittedAt.add(score == null ? null : AdmissionEvent.admittedAtMillis(score));
+                    }
+                    return admittedAt;
+                });
+    }
+
+    @Override
+    public Mono<Boolean> removeAdmitted(final String queue, final long userId) {
+        var members = memberCodec.isMigrating()
+                ? new Object[] { memberCodec.encode(userId), memberCodec.legacy(userId) }
+                : new Object[] { memberCodec.encode(userId) };
+        return reactiveRedisTemplate.opsForZSet().remove(proceedKey(queue, userId), members)
+                .map(removed -> removed > 0);
+    }
+
+    @Override
+    public Mono<Long> activeSessions(final String queue) {
+        return shardedWaitQueueService.isSharded(queue)
+                ? shardedWaitQueueService.activeSessions(queue)
+                : reactiveRedisTemplate.opsForZSet().size(USER_QUEUE_PROCEED_KEY.formatted(queue));
+    }
+
+    @Override
+    public Mono<Tuple4<Long, Long, Long, Boolean>> sweep(final String queue, final long waiterCutoff, final long admittedCutoff, final long batch) {
+        var args = List.of(String.valueOf(waiterCutoff), String.valueOf(admittedCutoff), String.valueOf(batch), queue);
+        var sweepResult = shardedWaitQueueService.isSharded(queue)
+                ? shardedWaitQueueService.sweep(queue, args)
+                : reactiveRedisTemplate.execute(userQueueScripts.getSweepQueue(),
+                        List.of(USER_QUEUE_WAIT_KEY.formatted(queue), USER_QUEUE_SEEN_KEY.formatted(queue), USER_QUEUE_PROCEED_KEY.formatted(queue), USER_QUEUE_REGISTRY_KEY),
+                        args)
+                .next();
+        return userQueueMetrics.command("sweep", sweepResult)
+                .map(result -> Tuples.of(result.get(0), result.get(1), result.get(2), result.get(4) == 1));
+    }
+
+    // 전체 키를 SCAN 하지 않고 대기 인원이 있는 대기열 목록만 조회
+    @Override
+    public Flux<String> queues() {
+        return reactiveRedisTemplate.opsForSet().scan(USER_QUEUE_REGISTRY_KEY);
+    }
+
+    // 스크립트 인자 ( 대략적인 순번이면 1 )
+    private String approximate() {
+        return rankProperties.isApproximate() ? "1" : "0";
+    }
+
+    // 스크립트 인자로 ( member, 이전 인코딩 member ) 를 userId 순서대로 추가
+    private void addMembers(final List<String> args, final List<Long> userIds) {
+        userIds.forEach(userId -> {
+            args.add(memberCodec.encode(userId));
+            args.add(memberCodec.legacy(userId));
+        });
+    }
+
+    // 허용열 member 조회 ( 인코딩을 바꾸는 중이면 없을 때 이전 인코딩 member 로 한번 더 )
+    private <T> Mono<T> proceedLookup(final long userId, final Function<String, Mono<T>> lookup) {
+        var found = lookup.apply(memberCodec.encode(userId));
+        return memberCodec.isMigrating()
+                ? found.switchIfEmpty(Mono.defer(() -> lookup.apply(memberCodec.legacy(userId))))
+                : found;
+    }
+
+    // 허용열 키 ( 샤드 대기열이면 사용자의 샤드 )
+    private String proceedKey(final String queue, final long userId) {
+        return shardedWaitQueueService.isSharded(queue) ? shardedWaitQueueService.proceedKey(queue, userId) : USER_QUEUE_PROCEED_KEY.formatted(queue);
+    }
+}
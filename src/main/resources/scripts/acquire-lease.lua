@@ -0,0 +1,17 @@
+-- 샤드 리스 획득 / 갱신
+-- KEYS[1] : 리스 ( users:queue:lease:%d )
+-- KEYS[2] : 펜싱 토큰 ( users:queue:lease:%d:fence )
+-- ARGV[1] : nodeId
+-- ARGV[2] : ttl ( millis )
+-- ARGV[3] : 새로 획득 가능 여부 ( 1|0 )
+-- return  : 펜싱 토큰 ( 획득 실패시 0 )
+local owner = redis.call('GET', KEYS[1])
+if owner == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return tonumber(redis.call('GET', KEYS[2]))
+end
+if not owner and ARGV[3] == '1' then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+    return redis.call('INCR', KEYS[2])
+end
+return 0
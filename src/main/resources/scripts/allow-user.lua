@@ -0,0 +1,41 @@
+-- 진입 허용 ( wait -> proceed 이동을 원자적으로 처리 )
+-- KEYS[1] : 대기열 ( users:queue:%s:wait, score : 등록 순번 )
+-- KEYS[2] : 허용열 ( users:queue:%s:proceed )
+-- KEYS[3] : 활성 대기열 목록 ( users:queue:registry )
+-- KEYS[4] : 펜싱 토큰 ( users:queue:lease:%d:fence )
+-- KEYS[5] : 마지막 접속 시각 ( users:queue:%s:seen )
+-- KEYS[6] : 지금까지 허용된 인원 ( users:queue:%s:head )
+-- KEYS[7] : 진입 허용 이벤트 ( users:queue:%s:admitted )
+-- KEYS[8] : 마지막으로 허용된 등록 순번 ( users:queue:%s:head-seq )
+-- ARGV[1] : 허용할 인원수
+-- ARGV[2] : 허용 시각 ( epoch seconds, 소수점 아래 millis, 허용열 score )
+-- ARGV[3] : queue
+-- ARGV[4] : 펜싱 토큰 ( 빈값이면 검사하지 않음 )
+-- ARGV[5] : 진입 허용 이벤트 최대 길이 ( 0 이면 남기지 않음 )
+-- ARGV[6] : 진입 허용 이벤트 보관 시간 ( 초, 마지막 허용부터, 비워진 대기열의 stream 이 남지 않도록 )
+-- return  : { 실제 허용된 인원수 ( 리스를 잃은 노드면 -1 ), 지금까지 허용된 인원, 목록에서 빠졌으면 1 }
+if ARGV[4] ~= '' and redis.call('GET', KEYS[4]) ~= ARGV[4] then
+    return { -1, 0, 0 }
+end
+local popped = redis.call('ZPOPMIN', KEYS[1], ARGV[1])
+local userIds = {}
+for i = 1, #popped, 2 do
+    redis.call('ZADD', KEYS[2], ARGV[2], popped[i])
+    redis.call('ZREM', KEYS[5], popped[i])
+    userIds[#userIds + 1] = popped[i]
+end
+if #userIds > 0 then
+    redis.call('SET', KEYS[8], popped[#popped])
+    if ARGV[5] ~= '0' then
+        redis.call('XADD', KEYS[7], 'MAXLEN', '~', ARGV[5], '*', 'queue', ARGV[3], 'admittedAt', ARGV[2], 'userIds', table.concat(userIds, ','))
+        redis.call('EXPIRE', KEYS[7], ARGV[6])
+    end
+end
+-- 대기열과 허용열이 모두 비었으면 목록에서 제거 ( 허용열은 정리 대상이라 남아있는 동안은 유지 )
+local dropped = 0
+if redis.call('ZCARD', KEYS[1]) == 0 and redis.call('ZCARD', KEYS[2]) == 0 then
+    dropped = redis.call('SREM', KEYS[3], ARGV[3])
+end
+local allowed = #popped / 2
+local head = redis.call('INCRBY', KEYS[6], allowed)
+return { allowed, head, dropped }
@@ -0,0 +1,60 @@
+-- 순번 묶음 조회 + 마지막 접속 시각 갱신 ( 동시에 들어온 순번 조회를 한번에 처리 )
+-- KEYS[1] : 대기열 ( users:queue:%s:wait, score : 등록 순번 )
+-- KEYS[2] : 마지막 접속 시각 ( users:queue:%s:seen )
+-- KEYS[3] : 지금까지 허용된 인원 ( users:queue:%s:head )
+-- KEYS[4] : 마지막으로 허용된 등록 순번 ( users:queue:%s:head-seq )
+-- KEYS[5] : 마지막 기존 대기자 score ( users:queue:%s:legacy-seq, 등록 순번 도입 이전 대기자가 남아있는 동안만 )
+-- ARGV[1] : 현재 시각 ( unix timestamp )
+-- ARGV[2] : 대략적인 순번이면 1 ( ZRANK 대신 등록 순번 - 마지막으로 허용된 등록 순번 - 1 )
+-- ARGV[3..] : userId member, 이전 인코딩 userId member ( 빈값이면 확인하지 않음 ), ...
+-- return  : { 지금까지 허용된 인원, 순번(0부터 시작, 대기열에 없으면 -1), ... } ( userId 순서대로 )
+local head = tonumber(redis.call('GET', KEYS[3]) or '0')
+
+-- 등록 순번 도입 이전 대기자 ( unix timestamp score ) 가 남아있으면 score 차이가 인원수가 아니라서 실제 위치 ( ZRANK ) 를 쓰고,
+-- 모두 빠지면 마지막으로 허용된 등록 순번을 그 뒤로 맞추고 legacy-seq 를 지운다
+local function approximate()
+    local legacy = redis.call('GET', KEYS[5])
+    if not legacy then
+        return true
+    end
+    local first = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    if first[2] and tonumber(first[2]) <= tonumber(legacy) then
+        return false
+    end
+    if tonumber(redis.call('GET', KEYS[4]) or '0') < tonumber(legacy) then
+        redis.call('SET', KEYS[4], legacy)
+    end
+    redis.call('DEL', KEYS[5])
+    return true
+end
+
+local useSeq = ARGV[2] == '1' and approximate()
+local headSeq = tonumber(redis.call('GET', KEYS[4]) or '0')
+
+local function position(member)
+    if useSeq then
+        local seq = redis.call('ZSCORE', KEYS[1], member)
+        return seq and math.max(tonumber(seq) - headSeq - 1, 0)
+    end
+    return redis.call('ZRANK', KEYS[1], member)
+end
+
+local result = { head }
+local seen = {}
+for i = 3, #ARGV, 2 do
+    local member = ARGV[i]
+    local rank = position(member)
+    if not rank and ARGV[i + 1] ~= '' then
+        member = ARGV[i + 1]
+        rank = position(member)
+    end
+    if rank then
+        seen[#seen + 1] = ARGV[1]
+        seen[#seen + 1] = member
+    end
+    result[#result + 1] = rank or -1
+end
+if #seen > 0 then
+    redis.call('ZADD', KEYS[2], unpack(seen))
+end
+return result
@@ -0,0 +1,13 @@
+-- 순번 대량 조회 ( 마지막 접속 시각은 갱신하지 않음 )
+-- KEYS[1] : 대기열 ( users:queue:%s:wait )
+-- ARGV[1..] : userId member, 이전 인코딩 userId member ( 빈값이면 확인하지 않음 ), ...
+-- return  : { 순번(0부터 시작, 대기열에 없으면 -1), ... } ( userId 순서대로 )
+local result = {}
+for i = 1, #ARGV, 2 do
+    local rank = redis.call('ZRANK', KEYS[1], ARGV[i])
+    if not rank and ARGV[i + 1] ~= '' then
+        rank = redis.call('ZRANK', KEYS[1], ARGV[i + 1])
+    end
+    result[#result + 1] = rank or -1
+end
+return result
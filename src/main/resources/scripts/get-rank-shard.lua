@@ -0,0 +1,20 @@
+-- 샤드 순번 조회 + 마지막 접속 시각 갱신
+-- KEYS[1] : 샤드 대기열 ( users:queue:{%s:%d}:wait )
+-- KEYS[2] : 샤드 마지막 접속 시각 ( users:queue:{%s:%d}:seen )
+-- ARGV[1] : userId member
+-- ARGV[2] : 현재 시각 ( unix timestamp, 빈값이면 갱신하지 않음 )
+-- ARGV[3] : 이전 인코딩 userId member ( 빈값이면 확인하지 않음 )
+-- return  : { 샤드 내 순번(0부터 시작, 대기열에 없으면 -1), score }
+local member = ARGV[1]
+local rank = redis.call('ZRANK', KEYS[1], member)
+if not rank and ARGV[3] ~= '' then
+    member = ARGV[3]
+    rank = redis.call('ZRANK', KEYS[1], member)
+end
+if not rank then
+    return { -1, 0 }
+end
+if ARGV[2] ~= '' then
+    redis.call('ZADD', KEYS[2], ARGV[2], member)
+end
+return { rank, tonumber(redis.call('ZSCORE', KEYS[1], member)) }
@@ -0,0 +1,9 @@
+-- 스케쥴러 노드 생존 신호 + 살아있는 노드 수 조회
+-- KEYS[1] : 노드 목록 ( users:queue:nodes )
+-- ARGV[1] : nodeId
+-- ARGV[2] : 현재 시각 ( epoch millis )
+-- ARGV[3] : 만료 시각 ( epoch millis )
+-- return  : 살아있는 노드 수
+redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[2])
+return redis.call('ZCARD', KEYS[1])
@@ -0,0 +1,35 @@
+-- 샤드 wait -> proceed 이동 ( cutoff 이하 score 만 )
+-- KEYS[1] : 샤드 대기열 ( users:queue:{%s:%d}:wait )
+-- KEYS[2] : 샤드 허용열 ( users:queue:{%s:%d}:proceed )
+-- KEYS[3] : 샤드 마지막 접속 시각 ( users:queue:{%s:%d}:seen )
+-- KEYS[4] : 샤드 진입 허용 이벤트 ( users:queue:{%s:%d}:admitted )
+-- KEYS[5] : 샤드가 마지막으로 받은 펜싱 토큰 ( users:queue:{%s:%d}:fence )
+-- ARGV[1] : cutoff score ( 전체 샤드를 합쳐 앞에서 count 번째 score )
+-- ARGV[2] : 최대 인원
+-- ARGV[3] : 허용 시각 ( epoch seconds, 소수점 아래 millis, 허용열 score )
+-- ARGV[4] : queue
+-- ARGV[5] : 진입 허용 이벤트 최대 길이 ( 0 이면 남기지 않음 )
+-- ARGV[6] : 펜싱 토큰 ( 빈값이면 검사하지 않음 )
+-- ARGV[7] : 진입 허용 이벤트 보관 시간 ( 초, 마지막 허용부터 )
+-- return  : 실제 허용된 인원수 ( 더 새 펜싱 토큰으로 이동한 적이 있으면 -1 )
+-- 리스 펜싱 토큰 키는 다른 슬롯이라 샤드 키에 지금까지 받은 가장 큰 토큰을 남겨두고 그보다 작은 토큰은 거절한다
+if ARGV[6] ~= '' then
+    local fence = tonumber(ARGV[6])
+    if fence < tonumber(redis.call('GET', KEYS[5]) or '0') then
+        return -1
+    end
+    redis.call('SET', KEYS[5], fence)
+end
+local members = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+for i = 1, #members do
+    redis.call('ZADD', KEYS[2], ARGV[3], members[i])
+end
+if #members > 0 then
+    redis.call('ZREM', KEYS[1], unpack(members))
+    redis.call('ZREM', KEYS[3], unpack(members))
+    if ARGV[5] ~= '0' then
+        redis.call('XADD', KEYS[4], 'MAXLEN', '~', ARGV[5], '*', 'queue', ARGV[4], 'admittedAt', ARGV[3], 'userIds', table.concat(members, ','))
+        redis.call('EXPIRE', KEYS[4], ARGV[7])
+    end
+end
+return #members
@@ -0,0 +1,15 @@
+-- 요청 제한 ( GCRA : 버킷에 다음 요청이 허용되는 이론상 시각만 저장 )
+-- KEYS[1] : 버킷 ( users:queue:rate-limit:%s:%s )
+-- ARGV[1] : 요청 하나가 쓰는 시간 ( micros )
+-- ARGV[2] : 한번에 몰아서 보낼 수 있는 시간 ( micros, 요청 하나 시간 * burst )
+-- return  : 다시 시도할 수 있을 때까지 남은 시간 ( micros, 허용되면 0 )
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local tat = tonumber(redis.call('GET', KEYS[1]) or '0')
+local next = math.max(tat, now) + tonumber(ARGV[1])
+local wait = next - now - tonumber(ARGV[2])
+if wait > 0 then
+    return wait
+end
+redis.call('SET', KEYS[1], string.format('%.0f', next), 'PX', math.ceil((next - now) / 1000) + 1)
+return 0
@@ -0,0 +1,44 @@
+-- 대기열 대량 등록 + 순번 조회를 한번에 처리
+-- KEYS[1] : 대기열 ( users:queue:%s:wait, score : 등록 순번 )
+-- KEYS[2] : 활성 대기열 목록 ( users:queue:registry )
+-- KEYS[3] : 등록 순번 ( users:queue:%s:seq )
+-- KEYS[4] : 마지막 기존 대기자 score ( users:queue:%s:legacy-seq, 등록 순번 도입 이전 대기자가 남아있는 동안만 )
+-- ARGV[1] : queue
+-- ARGV[2..] : userId member, 이전 인코딩 userId member ( 빈값이면 확인하지 않음 ), ...
+-- return  : { 등록여부(1|0), 순번(0부터 시작), ... } ( userId 순서대로 )
+-- 마지막 접속 시각은 남기지 않는다 ( 미리 등록된 사용자는 처음 순번을 조회할 때부터 정리 대상 )
+-- 순번은 항상 실제 위치 ( ZRANK )
+local members = {}
+local added = {}
+local total = 0
+for i = 2, #ARGV, 2 do
+    local member = ARGV[i]
+    if ARGV[i + 1] ~= '' and redis.call('ZSCORE', KEYS[1], ARGV[i + 1]) then
+        member = ARGV[i + 1]
+    end
+    members[#members + 1] = member
+    added[#members] = 0
+    if not redis.call('ZSCORE', KEYS[1], member) then
+        -- 등록 순번이 없던 대기열은 기존 대기자 ( unix timestamp score ) 뒤에서 시작
+        if redis.call('EXISTS', KEYS[3]) == 0 then
+            local last = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            if last[2] then
+                redis.call('SET', KEYS[4], last[2])
+            end
+            redis.call('SET', KEYS[3], last[2] or '0')
+        end
+        redis.call('ZADD', KEYS[1], redis.call('INCR', KEYS[3]), member)
+        added[#members] = 1
+        total = total + 1
+    end
+end
+if total > 0 then
+    redis.call('SADD', KEYS[2], ARGV[1])
+end
+
+local result = {}
+for i = 1, #members do
+    result[#result + 1] = added[i]
+    result[#result + 1] = redis.call('ZRANK', KEYS[1], members[i])
+end
+return result
@@ -0,0 +1,56 @@
+-- 대기열 등록 + 순번 조회를 한번에 처리
+-- KEYS[1] : 대기열 ( users:queue:%s:wait, score : 등록 순번 )
+-- KEYS[2] : 활성 대기열 목록 ( users:queue:registry )
+-- KEYS[3] : 마지막 접속 시각 ( users:queue:%s:seen )
+-- KEYS[4] : 등록 순번 ( users:queue:%s:seq )
+-- KEYS[5] : 마지막으로 허용된 등록 순번 ( users:queue:%s:head-seq )
+-- KEYS[6] : 마지막 기존 대기자 score ( users:queue:%s:legacy-seq, 등록 순번 도입 이전 대기자가 남아있는 동안만 )
+-- ARGV[1] : 현재 시각 ( unix timestamp )
+-- ARGV[2] : userId member
+-- ARGV[3] : queue
+-- ARGV[4] : 이전 인코딩 userId member ( 빈값이면 확인하지 않음 )
+-- ARGV[5] : 대략적인 순번이면 1 ( 등록 순번 - 마지막으로 허용된 등록 순번 - 1 )
+-- return  : { 등록여부(1|0), 순번(0부터 시작) }
+-- 등록 순번 도입 이전 대기자 ( unix timestamp score ) 가 남아있으면 score 차이가 인원수가 아니라서 실제 위치 ( ZRANK ) 를 쓰고,
+-- 모두 빠지면 마지막으로 허용된 등록 순번을 그 뒤로 맞추고 legacy-seq 를 지운다
+local function approximate()
+    local legacy = redis.call('GET', KEYS[6])
+    if not legacy then
+        return true
+    end
+    local first = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    if first[2] and tonumber(first[2]) <= tonumber(legacy) then
+        return false
+    end
+    if tonumber(redis.call('GET', KEYS[5]) or '0') < tonumber(legacy) then
+        redis.call('SET', KEYS[5], legacy)
+    end
+    redis.call('DEL', KEYS[6])
+    return true
+end
+
+local member = ARGV[2]
+if ARGV[4] ~= '' and redis.call('ZSCORE', KEYS[1], ARGV[4]) then
+    member = ARGV[4]
+end
+local added = 0
+local seq = redis.call('ZSCORE', KEYS[1], member)
+if not seq then
+    -- 등록 순번이 없던 대기열은 기존 대기자 ( unix timestamp score ) 뒤에서 시작
+    if redis.call('EXISTS', KEYS[4]) == 0 then
+        local last = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+        if last[2] then
+            redis.call('SET', KEYS[6], last[2])
+        end
+        redis.call('SET', KEYS[4], last[2] or '0')
+    end
+    seq = redis.call('INCR', KEYS[4])
+    redis.call('ZADD', KEYS[1], seq, member)
+    redis.call('SADD', KEYS[2], ARGV[3])
+    added = 1
+end
+redis.call('ZADD', KEYS[3], ARGV[1], member)
+if ARGV[5] == '1' and approximate() then
+    return { added, math.max(tonumber(seq) - tonumber(redis.call('GET', KEYS[5]) or '0') - 1, 0) }
+end
+return { added, redis.call('ZRANK', KEYS[1], member) }
@@ -0,0 +1,15 @@
+-- 샤드 대기열 등록 ( 같은 해시태그 키만 사용 )
+-- KEYS[1] : 샤드 대기열 ( users:queue:{%s:%d}:wait )
+-- KEYS[2] : 샤드 마지막 접속 시각 ( users:queue:{%s:%d}:seen )
+-- ARGV[1] : score ( 대기열 공용 순번 )
+-- ARGV[2] : userId member
+-- ARGV[3] : 현재 시각 ( unix timestamp )
+-- ARGV[4] : 이전 인코딩 userId member ( 빈값이면 확인하지 않음 )
+-- return  : { 등록여부(1|0), 샤드 내 순번(0부터 시작), score }
+local member = ARGV[2]
+if ARGV[4] ~= '' and redis.call('ZSCORE', KEYS[1], ARGV[4]) then
+    member = ARGV[4]
+end
+local added = redis.call('ZADD', KEYS[1], 'NX', ARGV[1], member)
+redis.call('ZADD', KEYS[2], ARGV[3], member)
+return { added, redis.call('ZRANK', KEYS[1], member), tonumber(redis.call('ZSCORE', KEYS[1], member)) }
@@ -0,0 +1,8 @@
+-- 샤드 리스 반납 ( 본인 소유일 때만 )
+-- KEYS[1] : 리스 ( users:queue:lease:%d )
+-- ARGV[1] : nodeId
+-- return  : 반납 여부 ( 1|0 )
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
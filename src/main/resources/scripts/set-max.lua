@@ -0,0 +1,11 @@
+-- 값이 더 클 때만 SET ( 늦게 끝난 진입 허용이 기준값을 뒤로 돌리지 않도록 )
+-- KEYS[1] : 키 ( users:queue:{%s}:head-seq )
+-- ARGV[1] : 새 값
+-- return  : 저장된 값
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local value = tonumber(ARGV[1])
+if value > current then
+    redis.call('SET', KEYS[1], value)
+    return value
+end
+return current
@@ -0,0 +1,29 @@
+-- 떠난 대기자 / 만료된 허용자 정리 ( 한번에 batch 개씩만 )
+-- KEYS[1] : 대기열 ( users:queue:%s:wait )
+-- KEYS[2] : 마지막 접속 시각 ( users:queue:%s:seen )
+-- KEYS[3] : 허용열 ( users:queue:%s:proceed )
+-- KEYS[4] : 활성 대기열 목록 ( users:queue:registry, 샤드 대기열이면 생략하고 호출한 쪽에서 처리 )
+-- ARGV[1] : 이 시각 이전에 마지막으로 접속한 대기자는 제거
+-- ARGV[2] : 이 시각 이전에 허용된 사용자는 제거
+-- ARGV[3] : batch
+-- ARGV[4] : queue
+-- return  : { 제거된 대기자 수, 제거된 허용자 수, 남은 대기 인원, 남은 허용 인원, 목록에서 빠졌으면 1 }
+local stale = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, ARGV[3])
+if #stale > 0 then
+    redis.call('ZREM', KEYS[1], unpack(stale))
+    redis.call('ZREM', KEYS[2], unpack(stale))
+end
+
+-- 허용열은 허용 시각 순이라 앞에서부터 잘라낸다
+local expired = math.min(redis.call('ZCOUNT', KEYS[3], '-inf', ARGV[2]), tonumber(ARGV[3]))
+if expired > 0 then
+    redis.call('ZREMRANGEBYRANK', KEYS[3], 0, expired - 1)
+end
+
+local depth = redis.call('ZCARD', KEYS[1])
+local active = redis.call('ZCARD', KEYS[3])
+local dropped = 0
+if KEYS[4] and depth == 0 and active == 0 then
+    dropped = redis.call('SREM', KEYS[4], ARGV[4])
+end
+return { #stale, expired, depth, active, dropped }
@@ -0,0 +1,49 @@
+package com.example.flow.filter;
+
+import com.example.flow.config.InternalApiProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+class InternalApiFilterTest {
+
+    private WebTestClient client(final String secret) {
+        var properties = new InternalApiProperties();
+        properties.setSecret(secret);
+        return WebTestClient.bindToWebHandler(exchange -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.OK);
+                    return Mono.empty();
+                })
+                .webFilter(new InternalApiFilter(properties))
+                .build();
+    }
+
+    @Test
+    void requireSecret() {
+        var client = client("internal-secret");
+
+        client.delete().uri("/api/v1/queue/allowed?user_id=1").exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED)
+                .expectBody().jsonPath("$.code").isEqualTo("UQ-0004");
+        client.delete().uri("/api/v1/queue/allowed?user_id=1").header(InternalApiFilter.SECRET_HEADER, "wrong").exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+        client.delete().uri("/api/v1/queue/allowed?user_id=1").header(InternalApiFilter.SECRET_HEADER, "internal-secret").exchange()
+                .expectStatus().isOk();
+
+        // 보호 중인 서비스의 지연 신호도 내부 API
+        client.post().uri("/api/v1/queue/feedback?latency_ms=800").exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+        client.post().uri("/api/v1/queue/feedback?latency_ms=800").header(InternalApiFilter.SECRET_HEADER, "internal-secret").exchange()
+                .expectStatus().isOk();
+
+        // 같은 경로라도 내부 API 가 아닌 method 는 그대로 통과
+        client.get().uri("/api/v1/queue/allowed?user_id=1&token=t").exchange().expectStatus().isOk();
+    }
+
+    @Test
+    void rejectWithoutConfiguredSecret() {
+        client(null).delete().uri("/api/v1/queue/allowed?user_id=1").header(InternalApiFilter.SECRET_HEADER, "").exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.flow.filter;
+
+import com.example.flow.config.RateLimitProperties;
+import com.example.flow.service.RateLimiter;
+import com.example.flow.service.UserQueueMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+class RateLimitFilterTest {
+
+    private final WebTestClient client;
+
+    RateLimitFilterTest() {
+        var limit = new RateLimitProperties.Limit();
+        limit.setRate(1d);
+        limit.setBurst(2L);
+        var endpoint = new RateLimitProperties.Endpoint();
+        endpoint.setUser(limit);
+        var properties = new RateLimitProperties();
+        properties.setEndpoints(Map.of("/api/v1/queue/rank", endpoint));
+
+        var filter = new RateLimitFilter(properties, new RateLimiter(properties, null, null), new UserQueueMetrics(new SimpleMeterRegistry()));
+        client = WebTestClient.bindToWebHandler(exchange -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.OK);
+                    return Mono.empty();
+                })
+                .webFilter(filter)
+                .build();
+    }
+
+    @Test
+    void tooManyRequests() {
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/api/v1/queue/rank?user_id=1").exchange().expectStatus().isOk();
+        }
+        client.get().uri("/api/v1/queue/rank?user_id=1").exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals("Retry-After", "1")
+                .expectBody().jsonPath("$.code").isEqualTo("UQ-0003");
+
+        // 다른 사용자 / 설정되지 않은 경로는 제한하지 않는다
+        client.get().uri("/api/v1/queue/rank?user_id=2").exchange().expectStatus().isOk();
+        for (int i = 0; i < 5; i++) {
+            client.get().uri("/api/v1/queue/allow?count=1").exchange().expectStatus().isOk();
+        }
+    }
+}
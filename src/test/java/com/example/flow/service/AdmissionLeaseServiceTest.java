@@ -0,0 +1,96 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbedeRedis;
+import com.example.flow.config.SchedulerProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbedeRedis.class)
+@ActiveProfiles("test")
+class AdmissionLeaseServiceTest {
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private UserQueueScripts userQueueScripts;
+
+    @Autowired
+    private ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection reactiveConnection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        reactiveConnection.serverCommands().flushAll().block();
+    }
+
+    private AdmissionLeaseService leaseService(String nodeId) {
+        var schedulerProperties = new SchedulerProperties();
+        schedulerProperties.getLease().setShards(16);
+        schedulerProperties.getLease().setNodeId(nodeId);
+        return new AdmissionLeaseService(reactiveRedisTemplate, userQueueScripts, schedulerProperties);
+    }
+
+    @Test
+    void singleNodeOwnsAllShards() {
+        var nodeA = leaseService("node-a");
+
+        StepVerifier.create(nodeA.renew())
+                .assertNext(owned -> assertEquals(16, owned.size()))
+                .verifyComplete();
+    }
+
+    @Test
+    void shardsAreSplitAcrossNodes() {
+        var nodeA = leaseService("node-a");
+        var nodeB = leaseService("node-b");
+
+        var ownedByA = nodeA.renew().block();
+        assertEquals(16, ownedByA.size());
+
+        // node-b 가 들어왔지만 아직 모든 샤드를 node-a 가 가지고 있음
+        assertTrue(nodeB.renew().block().isEmpty());
+
+        // node-a 는 몫(8개)을 넘는 샤드를 반납하고, node-b 가 이어받는다
+        ownedByA = nodeA.renew().block();
+        var ownedByB = nodeB.renew().block();
+        assertEquals(8, ownedByA.size());
+        assertEquals(8, ownedByB.size());
+        assertTrue(Collections.disjoint(ownedByA.keySet(), ownedByB.keySet()));
+    }
+
+    @Test
+    void staleFenceIsRejected() {
+        var nodeA = leaseService("node-a");
+        var nodeB = leaseService("node-b");
+        var queue = "default";
+
+        var staleFence = nodeA.renew().block().get(nodeA.shardOf(queue));
+
+        // node-a 의 리스가 만료되고 node-b 가 가져감
+        reactiveRedisTemplate.delete("users:queue:lease:%d".formatted(nodeA.shardOf(queue))).block();
+        var fence = nodeB.renew().block().get(nodeB.shardOf(queue));
+        assertTrue(fence > staleFence);
+
+        StepVerifier.create(userQueueService.registerWaitQueue(queue, 100L)
+                        .then(userQueueService.allowUser(queue, 1L, staleFence)))
+                .expectNext(-1L)
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.allowUser(queue, 1L, fence))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+}
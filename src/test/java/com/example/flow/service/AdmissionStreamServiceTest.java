@@ -0,0 +1,107 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbedeRedis;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbedeRedis.class)
+@ActiveProfiles("test")
+class AdmissionStreamServiceTest {
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private AdmissionStreamService admissionStreamService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        reactiveRedisTemplate.getConnectionFactory().getReactiveConnection().serverCommands().flushAll().block();
+    }
+
+    @Test
+    void consumeAndAck() {
+        Flux.range(100, 3).concatMap(userId -> userQueueService.registerWaitQueue("stream", userId.longValue())).blockLast();
+        userQueueService.allowUser("stream", 2L).block();
+        userQueueService.allowUser("stream", 2L).block();
+
+        // 진입 허용 한번에 이벤트 하나
+        var events = admissionStreamService.consume("stream", "warmup", "node-1")
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertEquals(List.of(100L, 101L), events.get(0).userIds());
+        assertEquals(List.of(102L), events.get(1).userIds());
+        assertEquals("stream", events.get(0).queue());
+
+        // ack 하면 pending 에서 빠진다
+        StepVerifier.create(Flux.fromIterable(events).concatMap(event -> admissionStreamService.ack(event, "warmup")).reduce(0L, Long::sum))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(reactiveRedisTemplate.opsForStream().pending(admissionStreamService.streamKey("stream"), "warmup"))
+                .assertNext(pending -> assertEquals(0L, pending.getTotalPendingMessages()))
+                .verifyComplete();
+    }
+
+    @Test
+    void claimPendingFromDeadConsumer() {
+        Flux.range(100, 2).concatMap(userId -> userQueueService.registerWaitQueue("stream", userId.longValue())).blockLast();
+        userQueueService.allowUser("stream", 2L).block();
+
+        // node-1 이 읽고 ack 하지 않은 채 죽었다
+        admissionStreamService.consume("stream", "warmup", "node-1").take(1).blockLast(Duration.ofSeconds(5));
+
+        // 아직 minIdle 이 지나지 않았으면 가져오지 않는다
+        StepVerifier.create(admissionStreamService.claimPending("stream", "warmup", "node-2", Duration.ofMinutes(1), 10))
+                .verifyComplete();
+
+        var claimed = admissionStreamService.claimPending("stream", "warmup", "node-2", Duration.ZERO, 10).collectList().block();
+        assertEquals(1, claimed.size());
+        assertEquals(List.of(100L, 101L), claimed.get(0).userIds());
+
+        StepVerifier.create(admissionStreamService.ack(claimed.get(0), "warmup"))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamExpiresAfterLastAdmission() {
+        userQueueService.registerWaitQueue("stream", 100L).then(userQueueService.allowUser("stream", 1L)).block();
+
+        // 비워진 대기열의 stream 은 ttl 뒤에 지워진다
+        StepVerifier.create(reactiveRedisTemplate.getExpire(admissionStreamService.streamKey("stream")))
+                .assertNext(ttl -> assertTrue(ttl.compareTo(Duration.ZERO) > 0))
+                .verifyComplete();
+    }
+
+    @Test
+    void consumeShardedQueue() {
+        Flux.range(100, 10).concatMap(userId -> userQueueService.registerWaitQueue("sharded", userId.longValue())).blockLast();
+        userQueueService.allowUser("sharded", 10L).block();
+
+        // 샤드 stream 을 합쳐서 허용된 인원 모두 받는다
+        StepVerifier.create(admissionStreamService.consume("sharded", "warmup", "node-1")
+                        .flatMapIterable(AdmissionEvent::userIds)
+                        .take(10)
+                        .sort())
+                .expectNext(100L, 101L, 102L, 103L, 104L, 105L, 106L, 107L, 108L, 109L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.flow.service;
+
+import com.example.flow.config.MemberProperties.Encoding;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberCodecTest {
+
+    @Test
+    void base62() {
+        assertEquals("~0", MemberCodec.encode(Encoding.BASE62, 0L));
+        assertEquals("~z", MemberCodec.encode(Encoding.BASE62, 61L));
+        assertEquals("~10", MemberCodec.encode(Encoding.BASE62, 62L));
+        assertEquals(12, MemberCodec.encode(Encoding.BASE62, 1_700_000_000_000_000_123L).length());
+
+        for (var userId : new long[] { 0L, 1L, 100L, 1_700_000_000_000_000_123L, Long.MAX_VALUE, -1L, Long.MIN_VALUE }) {
+            assertEquals(userId, MemberCodec.decode(MemberCodec.encode(Encoding.BASE62, userId)));
+        }
+    }
+
+    @Test
+    void decodeBothEncodings() {
+        // 인코딩을 바꾸는 중에는 두 인코딩이 섞여있다
+        assertEquals(1_700_000_000_000_000_123L, MemberCodec.decode("1700000000000000123"));
+        assertEquals(1_700_000_000_000_000_123L, MemberCodec.decode(MemberCodec.encode(Encoding.BASE62, 1_700_000_000_000_000_123L)));
+        assertEquals(-5L, MemberCodec.decode("-5"));
+        assertThrows(NumberFormatException.class, () -> MemberCodec.decode("~1-"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.flow.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueThroughputTrackerTest {
+
+    private final QueueThroughputTracker tracker = new QueueThroughputTracker(null);
+
+    @Test
+    void unknownRate() {
+        assertNull(tracker.estimateWaitSeconds("default", 100L, 0L));
+    }
+
+    @Test
+    void estimateWaitSeconds() {
+        // 10초 동안 초당 20명
+        for (int second = 0; second < 10; second++) {
+            tracker.record("default", 20L, second * 1000L);
+        }
+
+        assertEquals(20d, tracker.ratePerSecond("default", 10_000L), 0.001);
+        assertEquals(50L, tracker.estimateWaitSeconds("default", 1000L, 10_000L));
+        assertEquals(0L, tracker.estimateWaitSeconds("default", 0L, 10_000L));
+    }
+
+    @Test
+    void oldBucketsLeaveWindow() {
+        tracker.record("default", 600L, 0L);
+
+        // 윈도우를 지나면 속도를 알 수 없다
+        assertEquals(0d, tracker.ratePerSecond("default", QueueThroughputTracker.WINDOW_SECONDS * 1000L + 1000L));
+    }
+
+    @Test
+    void evictIdleWindows() {
+        tracker.record("idle", 10L, 0L);
+        tracker.record("default", 10L, 30_000L);
+
+        // 윈도우 동안 허용이 없는 대기열만 잊는다
+        tracker.evictIdle(QueueThroughputTracker.WINDOW_SECONDS * 1000L);
+        assertEquals(1, tracker.size());
+        assertTrue(tracker.ratePerSecond("default", QueueThroughputTracker.WINDOW_SECONDS * 1000L) > 0);
+    }
+}
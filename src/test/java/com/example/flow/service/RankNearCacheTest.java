@@ -0,0 +1,57 @@
+package com.example.flow.service;
+
+import com.example.flow.config.RankCacheProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankNearCacheTest {
+
+    private final RankNearCache cache = new RankNearCache(new RankCacheProperties(), null);
+
+    @Test
+    void rankFromHead() {
+        cache.put("default", 1L, 10L, 100L);
+        cache.advance("default", 104L);
+
+        assertEquals(6L, cache.get("default", 1L));
+    }
+
+    @Test
+    void lateReadKeepsHead() {
+        cache.put("default", 1L, 10L, 100L);
+        cache.advance("default", 104L);
+
+        // 진입 허용 전에 시작해서 advance 뒤에 끝난 조회 ( head 100 ) 는 캐시를 비우지 않는다
+        cache.put("default", 2L, 20L, 100L);
+        assertEquals(6L, cache.get("default", 1L));
+        assertEquals(16L, cache.get("default", 2L));
+    }
+
+    @Test
+    void resetEvent() {
+        cache.put("default", 1L, 10L, 100L);
+
+        // 데이터 초기화 뒤에는 이전 캐시를 쓰지 않고 head 도 새로 받는다
+        cache.reset("default");
+        assertNull(cache.get("default", 1L));
+
+        cache.put("default", 1L, 3L, 0L);
+        assertEquals(3L, cache.get("default", 1L));
+    }
+
+    @Test
+    void evictIdleHead() {
+        cache.put("idle", 1L, 10L, 100L);
+        cache.put("default", 1L, 10L, 100L);
+
+        // staleness 가 지나도록 저장이 없는 대기열의 head 를 지운다
+        cache.evictIdle(System.nanoTime() + new RankCacheProperties().getStaleness().toNanos() + 1);
+        assertEquals(0, cache.queues());
+
+        // 다시 만든 head 는 예전 항목의 epoch 와 겹치지 않는다
+        cache.put("default", 2L, 20L, 0L);
+        assertNull(cache.get("default", 1L));
+        assertEquals(20L, cache.get("default", 2L));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.flow.service;
+
+import com.example.flow.config.RateLimitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final RateLimiter rateLimiter = new RateLimiter(new RateLimitProperties(), null, null);
+
+    @Test
+    void burstThenRate() {
+        // 초당 2개, 최대 4개까지 몰아서
+        var limit = new RateLimitProperties.Limit();
+        limit.setRate(2d);
+        limit.setBurst(4L);
+
+        var now = 0L;
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0L, rateLimiter.acquireLocal("rank:user:1", limit, now));
+        }
+        // 5번째는 0.5초 뒤에 가능
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), rateLimiter.acquireLocal("rank:user:1", limit, now));
+
+        // 다른 client 는 따로 센다
+        assertEquals(0L, rateLimiter.acquireLocal("rank:user:2", limit, now));
+
+        // 0.5초 지나면 하나 채워진다
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertEquals(0L, rateLimiter.acquireLocal("rank:user:1", limit, now));
+        assertTrue(rateLimiter.acquireLocal("rank:user:1", limit, now) > 0);
+    }
+}
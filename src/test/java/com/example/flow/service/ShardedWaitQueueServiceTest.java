@@ -0,0 +1,173 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbedeRedis;
+import com.example.flow.config.RankProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuple2;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 샤드 대기열 ( test 프로필에서 sharded 대기열은 4 샤드 ) 이 키 하나 대기열과 같은 결과를 내는지 확인
+@SpringBootTest
+@Import(EmbedeRedis.class)
+@ActiveProfiles("test")
+class ShardedWaitQueueServiceTest {
+
+    @Autowired
+    private UserQueueService userQueueService;
+
+    @Autowired
+    private ShardedWaitQueueService shardedWaitQueueService;
+
+    @Autowired
+    private RankNearCache rankNearCache;
+
+    @Autowired
+    private ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    @Autowired
+    private RankProperties rankProperties;
+
+    @BeforeEach
+    public void beforeEach() {
+        ReactiveRedisConnection reactiveConnection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
+        reactiveConnection.serverCommands().flushAll().subscribe();
+        rankNearCache.clear();
+    }
+
+    @Test
+    void sameRanksAsSingleKeyQueue() {
+        // 두 대기열 모두 등록 순번이 score 라 같은 초에 등록되어도 등록 순서대로
+        var userIds = Flux.range(100, 60).map(Long::valueOf);
+        StepVerifier.create(userIds.concatMap(userId -> userQueueService.registerWaitQueue("single", userId)
+                                .zipWith(userQueueService.registerWaitQueue("sharded", userId)))
+                        .filter(ranks -> !ranks.getT1().equals(ranks.getT2()))
+                        .count())
+                .expectNext(0L)
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.allowUser("single",7L).zipWith(userQueueService.allowUser("sharded",7L)))
+                .assertNext(allowed -> assertEquals(allowed.getT1(), allowed.getT2()))
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.allowUser("single",13L).zipWith(userQueueService.allowUser("sharded",13L)))
+                .assertNext(allowed -> assertEquals(allowed.getT1(), allowed.getT2()))
+                .verifyComplete();
+
+        StepVerifier.create(ranks("single").zipWith(ranks("sharded")))
+                .assertNext(ranks -> assertEquals(ranks.getT1(), ranks.getT2()))
+                .verifyComplete();
+
+        // 앞선 20 명이 허용되었다
+        StepVerifier.create(Flux.range(100, 20).flatMap(userId -> userQueueService.isAllowed("sharded", userId.longValue())).all(allowed -> allowed))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("sharded",120L))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void alreadyRegisterShardedQueue() {
+        StepVerifier.create(userQueueService.registerWaitQueue("sharded",100L)
+                        .then(userQueueService.registerWaitQueue("sharded",100L)))
+                .expectError()
+                .verify();
+    }
+
+    @Test
+    void tokenForShardedQueue() {
+        StepVerifier.create(userQueueService.registerWaitQueue("sharded",100L)
+                        .then(userQueueService.allowUser("sharded",1L))
+                        .then(userQueueService.generateToken("sharded",100L))
+                        .flatMap(token -> userQueueService.isAllowedByToken("sharded",100L,token)))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void sweepShardedQueue() {
+        StepVerifier.create(userQueueService.registerWaitQueue("sharded",100L)
+                        .then(userQueueService.registerWaitQueue("sharded",101L))
+                        .then(reactiveRedisTemplate.opsForZSet().add("users:queue:{sharded:%d}:seen".formatted(Math.floorMod(Long.hashCode(100L), 4)),"100",0))
+                        .then(userQueueService.sweepQueue("sharded")))
+                .assertNext(swept -> assertEquals(1L, swept.getT1()))
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.getRank("sharded",101L))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void approximateShardedRank() {
+        rankProperties.setMode(RankProperties.Mode.APPROXIMATE);
+        try {
+            Flux.range(100, 10).concatMap(userId -> userQueueService.registerWaitQueue("sharded", userId.longValue())).blockLast();
+            userQueueService.allowUser("sharded",3L).block();
+
+            // 다른 샤드를 세지 않고 등록 순번 차이로 계산 ( 떠난 대기자가 없으면 실제 순번과 같다 )
+            StepVerifier.create(Flux.just(103L, 109L).concatMap(userId -> userQueueService.getRank("sharded", userId)))
+                    .expectNext(1L, 7L)
+                    .verifyComplete();
+            // 이미 등록된 사용자는 등록 순번을 새로 받지 않는다
+            StepVerifier.create(userQueueService.registerOrGetRank("sharded",105L)
+                            .then(userQueueService.registerWaitQueue("sharded",110L)))
+                    .expectNext(8L)
+                    .verifyComplete();
+        } finally {
+            rankProperties.setMode(RankProperties.Mode.EXACT);
+        }
+    }
+
+    @Test
+    void registerConcurrently() {
+        // 같은 사용자가 동시에 등록해도 한번만 들어간다 ( 공용 순번은 건너뛸 수 있지만 등록 순서는 유지 )
+        StepVerifier.create(Flux.range(0, 40)
+                        .flatMap(index -> userQueueService.registerOrGetRank("sharded", 100L + index % 2))
+                        .then(Flux.range(0, 4).flatMap(shard -> reactiveRedisTemplate.opsForZSet().size("users:queue:{sharded:%d}:wait".formatted(shard))).reduce(0L, Long::sum)))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("sharded",100L).zipWith(userQueueService.getRank("sharded",101L)))
+                .assertNext(ranks -> assertEquals(3L, ranks.getT1() + ranks.getT2()))
+                .verifyComplete();
+    }
+
+    @Test
+    void rejectStaleFenceInShard() {
+        // 100 ~ 107 은 4 샤드에 두명씩, 앞선 4 명을 허용하면 모든 샤드가 펜싱 토큰 6 을 받는다
+        Flux.range(100, 8).concatMap(userId -> userQueueService.registerWaitQueue("sharded", userId.longValue())).blockLast();
+        reactiveRedisTemplate.opsForValue().set("test:fence", "6").block();
+        StepVerifier.create(shardedWaitQueueService.allow("sharded", 4L, 6L, "test:fence").map(Tuple2::getT1))
+                .expectNext(4L)
+                .verifyComplete();
+
+        // 리스 펜싱 토큰을 GET 한 뒤에 리스를 잃은 노드 ( 토큰 5 ) 는 샤드 스크립트에서 거절
+        reactiveRedisTemplate.opsForValue().set("test:fence", "5").block();
+        StepVerifier.create(shardedWaitQueueService.allow("sharded", 4L, 5L, "test:fence").map(Tuple2::getT1))
+                .expectNext(-1L)
+                .verifyComplete();
+        StepVerifier.create(userQueueService.getRank("sharded",104L))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(reactiveRedisTemplate.opsForValue().get("users:queue:{sharded}:head-seq"))
+                .expectNext("4")
+                .verifyComplete();
+    }
+
+    private Mono<List<Long>> ranks(final String queue) {
+        return Flux.range(100, 60).concatMap(userId -> userQueueService.getRank(queue, userId.longValue())).collectList();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.flow.service;
+
+import com.example.flow.EmbedeRedis;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Import(EmbedeRedis.class)
+@ActiveProfiles("test")
+class StartupWarmupTest {
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private UserQueueScripts userQueueScripts;
+
+    @Autowired
+    private ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
+
+    @Test
+    void scriptsLoadedBeforeReady() {
+        // readiness 가 UP 이면 스크립트는 이미 redis 에 올라가 있다 ( 첫 요청부터 EVALSHA )
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+        StepVerifier.create(reactiveRedisTemplate.execute(connection -> connection.scriptingCommands()
+                        .scriptExists(List.of(userQueueScripts.getGetRank().getSha1(), userQueueScripts.getAllowUser().getSha1()))))
+                .expectNext(true, true)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.flow.service;
+
+import com.example.flow.config.TokenProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenGeneratorTest {
+
+    private final TokenGenerator tokenGenerator;
+
+    TokenGeneratorTest() {
+        var tokenProperties = new TokenProperties();
+        tokenProperties.setSecret("flow-test-token-secret");
+        tokenProperties.setCacheSize(0);
+        tokenGenerator = new TokenGenerator(tokenProperties);
+    }
+
+    @Test
+    void verify() {
+        var token = tokenGenerator.mint("default", 5L, 1_700_000_000_000L);
+
+        assertEquals(1_700_000_000_000L, tokenGenerator.verify("default", 5L, token).admittedAt());
+        assertNull(tokenGenerator.verify("default", 6L, token));
+        assertNull(tokenGenerator.verify("other", 5L, token));
+    }
+
+    @Test
+    void queueBoundary() {
+        // ( "a-", 5 ) 토큰의 userId 만 -5 로 바꿔서 ( "a", -5 ) 로 쓸 수 없다
+        var forged = "-" + tokenGenerator.mint("a-", 5L, 1_700_000_000_000L);
+
+        assertNull(tokenGenerator.verify("a", -5L, forged));
+    }
+
+    @Test
+    void rejectNegativeUserId() {
+        assertThrows(IllegalArgumentException.class, () -> tokenGenerator.mint("default", -1L, 1_700_000_000_000L));
+    }
+}
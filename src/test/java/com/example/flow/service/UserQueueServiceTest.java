@@ -1,18 +1,25 @@
 package com.example.flow.service;
 
 import com.example.flow.EmbedeRedis;
+import com.example.flow.config.MemberProperties;
+import com.example.flow.config.RankProperties;
 import com.example.flow.exception.ApplicationException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.connection.ReactiveRedisConnection;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,13 +31,33 @@ class UserQueueServiceTest {
     @Autowired
     private UserQueueService userQueueService;
 
+    @Autowired
+    private RankNearCache rankNearCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
     @Autowired
     private ReactiveRedisTemplate<String,String> reactiveRedisTemplate;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MemberProperties memberProperties;
+
+    @Autowired
+    private RankProperties rankProperties;
+
+    @Autowired
+    private AdmissionRevocationService admissionRevocationService;
+
     @BeforeEach
     public void beforeEach() {
         ReactiveRedisConnection reactiveConnection = reactiveRedisTemplate.getConnectionFactory().getReactiveConnection();
         reactiveConnection.serverCommands().flushAll().subscribe();
+        rankNearCache.clear();
+        singleFlight.clear();
     }
 
     @Test
@@ -48,6 +75,15 @@ class UserQueueServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void registerOrGetRank() {
+        StepVerifier.create(userQueueService.registerOrGetRank("default",100L)
+                        .then(userQueueService.registerOrGetRank("default",101L))
+                        .then(userQueueService.registerOrGetRank("default",100L)))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
     @Test
     void alreadyRegisterWaitQueue() {
         StepVerifier.create(userQueueService.registerWaitQueue("default",100L))
@@ -59,6 +95,32 @@ class UserQueueServiceTest {
                 .verify();
         }
 
+    @Test
+    void registerWaitQueueBulk() {
+        StepVerifier.create(userQueueService.registerWaitQueueBulk("default", Flux.range(1, 2500).map(Long::valueOf))
+                        .filter(registered -> registered.getT3())
+                        .count())
+                .expectNext(2500L)
+                .verifyComplete();
+
+        // 이미 등록된 사용자는 에러 없이 등록여부 false
+        StepVerifier.create(userQueueService.registerWaitQueueBulk("default", Flux.just(1L, 3000L)))
+                .assertNext(registered -> assertFalse(registered.getT3()))
+                .assertNext(registered -> assertTrue(registered.getT3()))
+                .verifyComplete();
+
+        // 같은 초에 등록되어도 등록 순번 순서라 등록한 순서대로 순번이 나온다
+        StepVerifier.create(userQueueService.getRankBulk("default", Flux.range(1, 2500).map(Long::valueOf).concatWith(Flux.just(3000L)))
+                        .map(ranked -> ranked.getT2())
+                        .collectList())
+                .assertNext(ranks -> assertEquals(LongStream.rangeClosed(1, 2501).boxed().toList(), ranks))
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.getRankBulk("default", Flux.just(4000L)))
+                .assertNext(ranked -> assertEquals(-1L, ranked.getT2()))
+                .verifyComplete();
+    }
+
     @Test
     void emptyAllowUser() {
         StepVerifier.create(userQueueService.allowUser("default",3L))
@@ -98,6 +160,68 @@ class UserQueueServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void queueRegistry() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.registerWaitQueue("other",100L))
+                        .then(reactiveRedisTemplate.opsForSet().members("users:queue:registry").collectList()))
+                .assertNext(queues -> assertEquals(2, queues.size()))
+                .verifyComplete();
+
+        // 허용열이 정리될 때까지는 목록에 남는다
+        StepVerifier.create(userQueueService.allowUser("default",1L)
+                        .then(reactiveRedisTemplate.opsForSet().size("users:queue:registry")))
+                .expectNext(2L)
+                .verifyComplete();
+
+        // 대기열과 허용열이 모두 비면 목록에서 빠진다
+        StepVerifier.create(userQueueService.revokeToken("default",100L)
+                        .then(userQueueService.sweepQueue("default"))
+                        .then(reactiveRedisTemplate.opsForSet().members("users:queue:registry").collectList()))
+                .expectNext(List.of("other"))
+                .verifyComplete();
+        // 목록에서 빠진 대기열은 지표도 제거된다
+        assertNull(meterRegistry.find("queue.admitted").tag("queue", "default").counter());
+        assertNull(meterRegistry.find("queue.depth").tag("queue", "default").gauge());
+
+        // 진입 허용에서 목록에서 빠져도 지표를 제거한다
+        StepVerifier.create(userQueueService.sweepQueue("other")
+                        .then(userQueueService.allowUser("other",1L))
+                        .then(userQueueService.revokeToken("other",100L))
+                        .then(userQueueService.allowUser("other",1L))
+                        .then(reactiveRedisTemplate.opsForSet().size("users:queue:registry")))
+                .expectNext(0L)
+                .verifyComplete();
+        assertNull(meterRegistry.find("queue.admitted").tag("queue", "other").counter());
+        assertNull(meterRegistry.find("queue.depth").tag("queue", "other").gauge());
+    }
+
+    @Test
+    void sweepStaleWaiters() {
+        // 100 은 오래전에 마지막으로 접속, 101 은 방금 접속
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.registerWaitQueue("default",101L))
+                        .then(reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen","100",0))
+                        .then(userQueueService.sweepQueue("default")))
+                .assertNext(swept -> assertEquals(1L, swept.getT1()))
+                .verifyComplete();
+
+        StepVerifier.create(userQueueService.getRank("default",101L))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void sweepExpiredProceed() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.allowUser("default",1L))
+                        .then(reactiveRedisTemplate.opsForZSet().add("users:queue:default:proceed","100",0))
+                        .then(userQueueService.sweepQueue("default"))
+                        .then(userQueueService.isAllowed("default",100L)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
     @Test
     void isAllowed() {
         StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
@@ -138,16 +262,279 @@ class UserQueueServiceTest {
     }
 
     @Test
-    void isAllowedByToken() throws NoSuchAlgorithmException {
+    void getRankFromNearCache() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.registerWaitQueue("default",101L))
+                        .then(userQueueService.registerWaitQueue("default",102L))
+                        .then(userQueueService.getRank("default",102L)))
+                .expectNext(3L)
+                .verifyComplete();
+
+        // 진입 허용으로 head 가 갱신되면 redis 조회 없이 순번이 당겨진다
+        StepVerifier.create(userQueueService.allowUser("default",2L)
+                        .then(userQueueService.getRank("default",102L)))
+                .expectNext(1L)
+                .verifyComplete();
+
+        // 정리로 순번이 불규칙하게 바뀌면 캐시를 무효화하고 다시 조회
+        StepVerifier.create(reactiveRedisTemplate.opsForZSet().add("users:queue:default:seen","102",0)
+                        .then(userQueueService.sweepQueue("default"))
+                        .then(userQueueService.getRank("default",102L)))
+                .expectNext(-1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void singleFlightDropsInvalidatedQueue() {
+        userQueueService.registerWaitQueue("single-flight",100L).then(userQueueService.getRank("single-flight",100L)).block();
+
+        // 움직인 대기열은 조회 기록째로 지운다
+        singleFlight.invalidate("single-flight");
+        singleFlight.evictIdle();
+        assertEquals(0, singleFlight.queues());
+    }
+
+    @Test
+    void getRankSingleFlight() {
+        userQueueService.registerWaitQueue("single-flight",100L).then(userQueueService.registerWaitQueue("single-flight",101L)).block();
+        var misses = singleFlightCount("rank", "miss");
+
+        // 같은 사용자의 동시 조회는 redis 조회 한번으로 합쳐진다
+        // ( 나머지는 진행 중인 조회를 같이 받거나, 먼저 끝났으면 보관된 결과 / near-cache 를 받는다 )
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> userQueueService.getRank("single-flight",101L)))
+                .expectNext(2L, 2L, 2L, 2L, 2L, 2L, 2L, 2L, 2L, 2L)
+                .verifyComplete();
+        assertEquals(1d, singleFlightCount("rank", "miss") - misses);
+
+        // 진입 허용되면 보관 중인 결과는 버린다
+        StepVerifier.create(userQueueService.isAllowed("single-flight",100L)
+                        .then(userQueueService.allowUser("single-flight",1L))
+                        .then(userQueueService.isAllowed("single-flight",100L)))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void getRankBatched() {
+        userQueueService.registerWaitQueueBulk("batched", Flux.range(1, 5).map(Long::valueOf)).blockLast();
+        userQueueService.allowUser("batched",1L).block();
+        var summary = meterRegistry.find("queue.batch.size").tag("op", "rank").summary();
+        var batches = summary == null ? 0L : summary.count();
+
+        // 동시에 들어온 순번 조회는 스크립트 한번으로 묶여서 각자의 순번을 받는다
+        StepVerifier.create(Flux.range(1, 5).flatMap(userId -> userQueueService.getRank("batched", userId.longValue()).map(rank -> userId + ":" + rank)).collectList())
+                .assertNext(ranks -> assertEquals(List.of("1:-1", "2:1", "3:2", "4:3", "5:4"), ranks.stream().sorted().toList()))
+                .verifyComplete();
+        assertTrue(meterRegistry.find("queue.batch.size").tag("op", "rank").summary().count() - batches < 5);
+
+        StepVerifier.create(Flux.range(1, 3).flatMapSequential(userId -> userQueueService.isAllowed("batched", userId.longValue())))
+                .expectNext(true, false, false)
+                .verifyComplete();
+    }
+
+    @Test
+    void registerOrderWithinSameSecond() {
+        // 같은 초에 등록되어도 userId 문자열 순 ( "10" < "9" ) 이 아니라 등록 순서대로
+        StepVerifier.create(Flux.just(9L, 10L, 1L).concatMap(userId -> userQueueService.registerWaitQueue("same-second", userId)))
+                .expectNext(1L, 2L, 3L)
+                .verifyComplete();
+        userQueueService.allowUser("same-second",1L).block();
+        StepVerifier.create(Flux.just(9L, 10L, 1L).flatMapSequential(userId -> userQueueService.isAllowed("same-second", userId)))
+                .expectNext(true, false, false)
+                .verifyComplete();
+    }
+
+    @Test
+    void approximateRank() {
+        rankProperties.setMode(RankProperties.Mode.APPROXIMATE);
+        try {
+            userQueueService.registerWaitQueueBulk("approximate", Flux.range(1, 5).map(Long::valueOf)).blockLast();
+            userQueueService.allowUser("approximate",2L).block();
+
+            StepVerifier.create(Flux.just(3L, 5L).concatMap(userId -> userQueueService.getRank("approximate", userId)))
+                    .expectNext(1L, 3L)
+                    .verifyComplete();
+            StepVerifier.create(userQueueService.registerWaitQueue("approximate",6L))
+                    .expectNext(4L)
+                    .verifyComplete();
+
+            // 앞에서 떠난 대기자 ( 4 ) 도 세므로 실제 순번 ( 3 ) 보다 크게 나온다
+            StepVerifier.create(reactiveRedisTemplate.opsForZSet().remove("users:queue:approximate:wait", "4")
+                            .then(userQueueService.getRank("approximate",7L).then(userQueueService.registerWaitQueue("approximate",7L))))
+                    .expectNext(5L)
+                    .verifyComplete();
+        } finally {
+            rankProperties.setMode(RankProperties.Mode.EXACT);
+        }
+    }
+
+    @Test
+    void approximateRankWithTimestampScores() {
+        rankProperties.setMode(RankProperties.Mode.APPROXIMATE);
+        try {
+            // 등록 순번 도입 이전 대기자 ( unix timestamp score, 같은 초 등록 포함 )
+            reactiveRedisTemplate.opsForZSet().add("users:queue:legacy:wait","1",1700000000)
+                    .then(reactiveRedisTemplate.opsForZSet().add("users:queue:legacy:wait","2",1700000000))
+                    .then(reactiveRedisTemplate.opsForZSet().add("users:queue:legacy:wait","3",1700000005))
+                    .block();
+
+            // 기존 대기자가 남아있는 동안은 실제 위치
+            StepVerifier.create(userQueueService.registerWaitQueue("legacy",4L))
+                    .expectNext(4L)
+                    .verifyComplete();
+            StepVerifier.create(userQueueService.allowUser("legacy",1L)
+                            .then(userQueueService.getRank("legacy",4L)))
+                    .expectNext(3L)
+                    .verifyComplete();
+
+            // 남은 기존 대기자가 떠나면 ( 정리 ) 그 뒤부터 등록 순번 차이
+            reactiveRedisTemplate.opsForZSet().remove("users:queue:legacy:wait","2","3").block();
+            rankNearCache.clear();
+            singleFlight.clear();
+            StepVerifier.create(userQueueService.getRank("legacy",4L))
+                    .expectNext(1L)
+                    .verifyComplete();
+            StepVerifier.create(userQueueService.registerWaitQueue("legacy",5L))
+                    .expectNext(2L)
+                    .verifyComplete();
+            StepVerifier.create(reactiveRedisTemplate.hasKey("users:queue:legacy:legacy-seq"))
+                    .expectNext(false)
+                    .verifyComplete();
+        } finally {
+            rankProperties.setMode(RankProperties.Mode.EXACT);
+        }
+    }
+
+    @Test
+    void migrateMemberEncoding() {
+        userQueueService.registerWaitQueue("migrating",100L).block();
+        userQueueService.registerWaitQueue("migrating",101L).block();
+        userQueueService.allowUser("migrating",1L).block();
+
+        // decimal 로 저장된 사용자가 남아있는 상태에서 base62 로 변경
+        memberProperties.setEncoding(MemberProperties.Encoding.BASE62);
+        memberProperties.setMigrating(true);
+        try {
+            StepVerifier.create(userQueueService.registerWaitQueue("migrating",101L))
+                    .expectError(ApplicationException.class)
+                    .verify();
+            StepVerifier.create(userQueueService.registerWaitQueue("migrating",102L))
+                    .expectNext(2L)
+                    .verifyComplete();
+            StepVerifier.create(Flux.just(101L, 102L).flatMapSequential(userId -> userQueueService.getRank("migrating", userId)))
+                    .expectNext(1L, 2L)
+                    .verifyComplete();
+            StepVerifier.create(userQueueService.isAllowed("migrating",100L))
+                    .expectNext(true)
+                    .verifyComplete();
+
+            StepVerifier.create(reactiveRedisTemplate.opsForZSet().range("users:queue:migrating:wait", Range.closed(0L, -1L)))
+                    .expectNext("101", MemberCodec.encode(MemberProperties.Encoding.BASE62, 102L))
+                    .verifyComplete();
+        } finally {
+            memberProperties.setEncoding(MemberProperties.Encoding.DECIMAL);
+            memberProperties.setMigrating(false);
+        }
+    }
+
+    private double singleFlightCount(final String op, final String result) {
+        var counter = meterRegistry.find("queue.single-flight").tag("op", op).tag("result", result).counter();
+        return counter == null ? 0d : counter.count();
+    }
+
+    @Test
+    void streamRank() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.registerWaitQueue("default",101L))
+                        .thenMany(userQueueService.streamRank("default",101L)))
+                .expectNext(2L)
+                .thenAwait(Duration.ofMillis(500)) // pub/sub 구독 대기
+                .then(() -> userQueueService.allowUser("default",1L).subscribe())
+                .expectNext(1L)
+                .then(() -> userQueueService.allowUser("default",1L).subscribe())
+                .expectNext(-1L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void isAllowedByToken() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.allowUser("default",1L))
+                        .then(userQueueService.generateToken("default",100L))
+                        .flatMap(token -> userQueueService.isAllowedByToken("default",100L,token)))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void isNotAllowedByWrongToken() {
+        var token = userQueueService.registerWaitQueue("default",100L)
+                .then(userQueueService.allowUser("default",1L))
+                .then(userQueueService.generateToken("default",100L))
+                .block();
+
+        // 다른 사용자 / 다른 대기열 / 변조된 토큰
+        StepVerifier.create(userQueueService.isAllowedByToken("default",101L,token))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowedByToken("other",100L,token))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(userQueueService.isAllowedByToken("default",100L,token.substring(0, token.length() - 1) + (token.endsWith("0") ? "1" : "0")))
+                .expectNext(false)
+                .verifyComplete();
         StepVerifier.create(userQueueService.isAllowedByToken("default",100L,"d333a5d4eb24f3f5cdd767d79b8c01aad3cd73d3537c70dec430455d37afe4b8"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void revokeToken() {
+        var token = userQueueService.registerWaitQueue("default",100L)
+                .then(userQueueService.allowUser("default",1L))
+                .then(userQueueService.generateToken("default",100L))
+                .block();
+
+        StepVerifier.create(userQueueService.revokeToken("default",100L)
+                        .then(userQueueService.isAllowedByToken("default",100L,token)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void reallowAfterRevokeWithinSameSecond() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.allowUser("default",1L))
+                        .then(userQueueService.revokeToken("default",100L)))
+                .expectNext(true)
+                .verifyComplete();
+
+        // 회수 직후 ( 같은 초 ) 다시 허용되면 새 토큰은 유효하다
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.allowUser("default",1L))
+                        .then(userQueueService.generateToken("default",100L))
+                        .flatMap(token -> userQueueService.isAllowedByToken("default",100L,token)))
                 .expectNext(true)
                 .verifyComplete();
     }
 
     @Test
-    void generateToken() throws NoSuchAlgorithmException {
-        StepVerifier.create(userQueueService.generateToken("default",100L))
-                .expectNext("d333a5d4eb24f3f5cdd767d79b8c01aad3cd73d3537c70dec430455d37afe4b8")
+    void expireRevocations() {
+        // 토큰 유효 시간보다 오래된 회수 기록은 지워진다
+        StepVerifier.create(reactiveRedisTemplate.opsForZSet().add("users:queue:revoked","default:100",0)
+                        .then(userQueueService.revokeToken("default",101L))
+                        .then(admissionRevocationService.expire())
+                        .thenMany(reactiveRedisTemplate.opsForZSet().range("users:queue:revoked", Range.closed(0L, -1L))))
+                .expectNext("default:101")
                 .verifyComplete();
     }
+
+    @Test
+    void generateTokenNotAllowedUser() {
+        StepVerifier.create(userQueueService.registerWaitQueue("default",100L)
+                        .then(userQueueService.generateToken("default",100L)))
+                .expectError(ApplicationException.class)
+                .verify();
+    }
 }
\ No newline at end of file
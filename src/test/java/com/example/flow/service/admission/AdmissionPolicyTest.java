@@ -0,0 +1,83 @@
+package com.example.flow.service.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionPolicyTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void tokenBucket() {
+        var policy = new TokenBucketPolicy(10.0, 100L);
+
+        // 처음에는 burst 만큼
+        assertEquals(100L, policy.permits(0L, 0L));
+        policy.onAdmitted(100L);
+
+        // 0.5 초 뒤에는 5명
+        assertEquals(5L, policy.permits(SECOND / 2, 0L));
+        policy.onAdmitted(5L);
+
+        // 오래 쉬어도 burst 를 넘지 않는다
+        assertEquals(100L, policy.permits(SECOND * 60, 0L));
+    }
+
+    @Test
+    void tokenBucketKeepsUnusedPermits() {
+        var policy = new TokenBucketPolicy(10.0, 100L);
+        policy.permits(0L, 0L);
+        policy.onAdmitted(100L);
+
+        // 대기열에 1명밖에 없어서 1명만 허용되면 나머지는 다음 tick 으로 넘어간다
+        assertEquals(10L, policy.permits(SECOND, 0L));
+        policy.onAdmitted(1L);
+        assertEquals(14L, policy.permits(SECOND + SECOND / 2, 0L));
+    }
+
+    @Test
+    void targetActive() {
+        var policy = new TargetActivePolicy(1000L);
+
+        assertEquals(300L, policy.permits(0L, 700L));
+        assertEquals(0L, policy.permits(0L, 1200L));
+    }
+
+    @Test
+    void aimd() {
+        var policy = new AimdPolicy(10.0, 100L, 1.0, 100.0, 2.0, 0.5, 500L);
+
+        // 문제가 없으면 tick 마다 rate 증가
+        policy.permits(0L, 0L);
+        assertEquals(12.0, policy.getRate());
+
+        // 지연이 길어지면 절반으로
+        policy.onFeedback(800L, false);
+        policy.permits(SECOND, 0L);
+        assertEquals(6.0, policy.getRate());
+
+        // 에러도 과부하 신호
+        policy.onFeedback(10L, true);
+        policy.permits(SECOND * 2, 0L);
+        assertEquals(3.0, policy.getRate());
+
+        // 최소값 아래로는 내려가지 않는다
+        for (int i = 0; i < 10; i++) {
+            policy.onFeedback(10L, true);
+            policy.permits(SECOND * (3 + i), 0L);
+        }
+        assertEquals(1.0, policy.getRate());
+    }
+
+    @Test
+    void aimdRefillsAtPreviousRate() {
+        var policy = new AimdPolicy(10.0, 100L, 1.0, 100.0, 2.0, 0.5, 500L);
+        policy.onAdmitted(policy.permits(0L, 0L));
+
+        // 과부하 신호를 받은 tick 에도 지난 1초 동안 쌓인 토큰은 그동안의 rate ( 12 ) 로 채운다
+        policy.onFeedback(800L, false);
+        assertEquals(12L, policy.permits(SECOND, 0L));
+        assertEquals(6.0, policy.getRate());
+    }
+}
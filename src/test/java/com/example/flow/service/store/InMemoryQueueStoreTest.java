@@ -0,0 +1,165 @@
+package com.example.flow.service.store;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryQueueStoreTest {
+
+    private final InMemoryQueueStore store = new InMemoryQueueStore();
+
+    @Test
+    void registerAndRank() {
+        StepVerifier.create(store.register("default", 100L).map(result -> result.getT1() + ":" + result.getT2()))
+                .expectNext("true:0")
+                .verifyComplete();
+        StepVerifier.create(store.register("default", 101L).map(result -> result.getT1() + ":" + result.getT2()))
+                .expectNext("true:1")
+                .verifyComplete();
+        StepVerifier.create(store.register("default", 100L).map(result -> result.getT1() + ":" + result.getT2()))
+                .expectNext("false:0")
+                .verifyComplete();
+
+        StepVerifier.create(store.rank("default", 101L).map(result -> result.getT1()))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(store.rank("default", 102L).map(result -> result.getT1()))
+                .expectNext(-1L)
+                .verifyComplete();
+        StepVerifier.create(store.rank("unknown", 100L).map(result -> result.getT1()))
+                .expectNext(-1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void admit() {
+        StepVerifier.create(store.registerBulk("default", Flux.range(1, 10).map(Long::valueOf)).map(result -> result.getT2()))
+                .expectNext(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L)
+                .verifyComplete();
+
+        StepVerifier.create(store.admit("default", 3L, null).map(result -> result.getT1() + ":" + result.getT2()))
+                .expectNext("3:3")
+                .verifyComplete();
+        StepVerifier.create(store.rank("default", 4L).map(result -> result.getT1() + ":" + result.getT2()))
+                .expectNext("0:3")
+                .verifyComplete();
+        StepVerifier.create(store.isAdmitted("default", 3L))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(store.isAdmitted("default", 4L))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(store.activeSessions("default"))
+                .expectNext(3L)
+                .verifyComplete();
+
+        StepVerifier.create(store.removeAdmitted("default", 3L))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(store.admittedAt("default", 3L))
+                .verifyComplete();
+    }
+
+    @Test
+    void sweep() {
+        store.register("default", 1L).block();
+        store.registerBulk("default", Flux.just(2L)).blockLast();
+        store.admit("default", 1L, null).block();
+        store.register("default", 3L).block();
+
+        var future = Instant.now().plusSeconds(1).getEpochSecond();
+
+        // 대량 등록된 사용자는 순번을 조회하기 전까지 정리되지 않는다
+        StepVerifier.create(store.sweep("default", future, future, 100L).map(result -> result.getT1() + ":" + result.getT2() + ":" + result.getT3()))
+                .expectNext("1:1:1")
+                .verifyComplete();
+        StepVerifier.create(store.rank("default", 2L).map(result -> result.getT1()))
+                .expectNext(0L)
+                .verifyComplete();
+        StepVerifier.create(store.queues())
+                .expectNext("default")
+                .verifyComplete();
+
+        store.sweep("default", future, future, 100L).block();
+        StepVerifier.create(store.queues())
+                .verifyComplete();
+    }
+
+    @Test
+    void removeIdleByLastSeen() {
+        var index = new LongRankIndex(8);
+        index.add(1L, 0L);
+        index.add(2L, 1L);
+        index.add(3L, 2L);
+        index.touch(1L, 10L);
+
+        // 앞에 있어도 최근에 접속했으면 남고, 오래된 접속 순서로 제거
+        assertEquals(1, index.removeIdle(5L, 1L));
+        assertEquals(-1L, index.rank(2L));
+        assertEquals(1, index.removeIdle(5L, 10L));
+        assertEquals(0L, index.rank(1L));
+        assertEquals(1, index.size());
+    }
+
+    // 등록 / 순번 조회 / 진입 허용 / 정리를 섞어서 TreeMap 으로 계산한 순번과 비교 ( 압축 / 확장 포함 )
+    @Test
+    void rankIndexMatchesTreeMap() {
+        var random = new Random(42);
+        var index = new LongRankIndex(8);
+        var expected = new TreeMap<Long, Long>(); // seq -> userId
+        var seqs = new HashMap<Long, Long>(); // userId -> seq
+        var seenAt = new HashMap<Long, Long>(); // userId -> 마지막 접속 시각
+        long seq = 0;
+
+        for (int step = 0; step < 20_000; step++) {
+            var op = random.nextInt(20);
+            if (op < 10) {
+                var userId = (long) random.nextInt(5_000) - 100; // 0 과 음수 포함
+                var added = index.add(userId, step);
+                assertEquals(!seqs.containsKey(userId), added);
+                if (added) {
+                    expected.put(seq, userId);
+                    seqs.put(userId, seq++);
+                    seenAt.put(userId, (long) step);
+                }
+            } else if (op < 15) {
+                var userId = (long) random.nextInt(5_000) - 100;
+                index.touch(userId, step);
+                var now = (long) step;
+                seenAt.computeIfPresent(userId, (key, value) -> now);
+                assertEquals(seqs.containsKey(userId) ? expected.headMap(seqs.get(userId)).size() : -1L, index.rank(userId));
+            } else if (op < 19) {
+                var polled = new ArrayList<Long>();
+                index.pollFirst(random.nextInt(20), polled::add);
+                for (var userId : polled) {
+                    assertEquals(expected.pollFirstEntry().getValue(), userId);
+                    seqs.remove(userId);
+                    seenAt.remove(userId);
+                }
+            } else {
+                var cutoff = step - 2_000L;
+                var removed = index.removeIdle(cutoff, Long.MAX_VALUE);
+                var stale = expected.values().stream().filter(userId -> seenAt.get(userId) <= cutoff).toList();
+                assertEquals(stale.size(), removed);
+                stale.forEach(userId -> {
+                    expected.remove(seqs.remove(userId));
+                    seenAt.remove(userId);
+                });
+            }
+            assertEquals(expected.size(), index.size());
+        }
+
+        var rank = 0L;
+        for (var userId : expected.values()) {
+            assertEquals(rank++, index.rank(userId));
+        }
+    }
+}
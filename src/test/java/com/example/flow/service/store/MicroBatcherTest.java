@@ -0,0 +1,67 @@
+package com.example.flow.service.store;
+
+import com.example.flow.config.BatchProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTest {
+
+    private final List<List<Long>> lookups = new CopyOnWriteArrayList<>();
+
+    private MicroBatcher<Long> batcher(final Duration window, final int maxSize) {
+        var batchProperties = new BatchProperties();
+        batchProperties.setWindow(window);
+        batchProperties.setMaxSize(maxSize);
+        return new MicroBatcher<>(batchProperties, (queue, userIds) -> {
+            lookups.add(List.copyOf(userIds));
+            return Mono.just(userIds.stream().map(userId -> userId * 10).toList());
+        }, size -> {});
+    }
+
+    @Test
+    void flushWhenFull() {
+        var batcher = batcher(Duration.ofSeconds(10), 3);
+
+        // maxSize 만큼 모이면 window 를 기다리지 않는다
+        StepVerifier.create(Flux.merge(batcher.submit("default", 1L), batcher.submit("default", 2L), batcher.submit("default", 3L)).collectList())
+                .assertNext(results -> assertEquals(List.of(10L, 20L, 30L), results.stream().sorted().toList()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+        assertEquals(1, lookups.size());
+        assertEquals(3, lookups.get(0).size());
+    }
+
+    @Test
+    void flushAfterWindow() {
+        var batcher = batcher(Duration.ofMillis(50), 100);
+
+        StepVerifier.create(Flux.merge(batcher.submit("default", 1L), batcher.submit("default", 2L)).collectList())
+                .assertNext(results -> assertEquals(2, results.size()))
+                .verifyComplete();
+        assertEquals(List.of(List.of(1L, 2L)), lookups);
+    }
+
+    @Test
+    void staleWindowTimerDoesNotFlushNextBatch() throws InterruptedException {
+        var batcher = batcher(Duration.ofMillis(500), 2);
+
+        // 가득 차서 바로 나간 묶음의 window 타이머 ( 500ms 뒤 ) 가 남아있다
+        batcher.submit("default", 1L).zipWith(batcher.submit("default", 2L)).block(Duration.ofSeconds(1));
+        Thread.sleep(300);
+
+        // 다음 묶음은 남은 타이머 ( 200ms 뒤 ) 가 아니라 자기 window ( 500ms ) 를 기다린다
+        var startedAt = System.nanoTime();
+        assertEquals(30L, batcher.submit("default", 3L).block(Duration.ofSeconds(2)));
+        var elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+        assertTrue(elapsed.toMillis() >= 450, "flushed after " + elapsed.toMillis() + "ms");
+        assertEquals(2, lookups.size());
+    }
+}